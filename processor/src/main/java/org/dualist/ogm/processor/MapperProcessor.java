@@ -0,0 +1,278 @@
+package org.dualist.ogm.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/*
+ * Generates a <ClassName>_Mapper class implementing org.dualist.ogm.mapping.Mapper for each public @OWLClass annotated class.
+ *
+ * The generated mapper instantiates the class with its no-arg constructor and accesses the @OWLProperty annotated fields
+ * through direct calls to their getters and setters. Dualist picks the mapper up from the classpath, and falls back
+ * to the reflective accessors for the classes and fields without one.
+ */
+@SupportedAnnotationTypes(MapperProcessor.OWL_CLASS)
+public class MapperProcessor extends AbstractProcessor {
+
+	static final String OWL_CLASS = "org.dualist.ogm.annotations.OWLClass";
+	static final String OWL_PROPERTY = "org.dualist.ogm.annotations.OWLProperty";
+	static final String SUFFIX = "_Mapper";
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (TypeElement annotation : annotations) {
+			for (Element e : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if (e.getKind() != ElementKind.CLASS) {
+					continue;
+				}
+				TypeElement type = (TypeElement) e;
+				if (!isInstantiable(type)) {
+					processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+							"No mapper generated for " + type.getQualifiedName() + ", it is not a public class with a public no-arg constructor", type);
+					continue;
+				}
+				try {
+					generate(type);
+				} catch (IOException ex) {
+					processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+							"Could not write mapper of " + type.getQualifiedName() + ": " + ex.getMessage(), type);
+				}
+			}
+		}
+		return false;
+	}
+
+	private boolean isInstantiable(TypeElement type) {
+		for (Element t = type; t.getKind().isClass() || t.getKind().isInterface(); t = t.getEnclosingElement()) {
+			if (!t.getModifiers().contains(Modifier.PUBLIC)) {
+				return false;
+			}
+			if (((TypeElement) t).getNestingKind() == NestingKind.MEMBER && !t.getModifiers().contains(Modifier.STATIC)) {
+				return false;
+			}
+		}
+		if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+			return false;
+		}
+		for (ExecutableElement c : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if (c.getParameters().isEmpty() && c.getModifiers().contains(Modifier.PUBLIC)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Outer_Inner for nested classes
+	 */
+	private static String mapperName(TypeElement type) {
+		String name = type.getSimpleName().toString();
+		for (Element e = type.getEnclosingElement(); e.getKind().isClass() || e.getKind().isInterface(); e = e.getEnclosingElement()) {
+			name = e.getSimpleName() + "_" + name;
+		}
+		return name + SUFFIX;
+	}
+
+	private void generate(TypeElement type) throws IOException {
+		String pkg = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		String name = mapperName(type);
+		String typeName = type.getQualifiedName().toString();
+
+		// field name -> accessor source, subclass fields first as in ClassMapping
+		Map<String, String> accessors = new LinkedHashMap<>();
+		for (TypeElement c = type; c != null; c = superclass(c)) {
+			for (VariableElement f : ElementFilter.fieldsIn(c.getEnclosedElements())) {
+				String fieldName = f.getSimpleName().toString();
+				if (!hasOWLProperty(f) || accessors.containsKey(fieldName)) {
+					continue;
+				}
+				String accessor = accessor(type, typeName, f);
+				if (accessor != null) {
+					accessors.put(fieldName, accessor);
+				}
+			}
+		}
+
+		JavaFileObject file = processingEnv.getFiler().createSourceFile(pkg.isEmpty() ? name : pkg + "." + name, type);
+		try (PrintWriter out = new PrintWriter(file.openWriter())) {
+			if (!pkg.isEmpty()) {
+				out.println("package " + pkg + ";");
+				out.println();
+			}
+			out.println("import java.lang.reflect.InvocationTargetException;");
+			out.println();
+			out.println("import org.dualist.ogm.mapping.Mapper;");
+			out.println("import org.dualist.ogm.mapping.PropertyAccessor;");
+			out.println();
+			out.println("/*");
+			out.println(" * Generated by " + MapperProcessor.class.getName() + " from " + typeName + ", do not edit.");
+			out.println(" */");
+			out.println("@SuppressWarnings({ \"unchecked\", \"rawtypes\" })");
+			out.println("public final class " + name + " implements Mapper<" + typeName + "> {");
+			out.println();
+			for (Map.Entry<String, String> a : accessors.entrySet()) {
+				out.println("\tprivate static final PropertyAccessor A_" + a.getKey() + " = " + a.getValue() + ";");
+				out.println();
+			}
+			out.println("\t@Override");
+			out.println("\tpublic Class<" + typeName + "> getMappedClass() {");
+			out.println("\t\treturn " + typeName + ".class;");
+			out.println("\t}");
+			out.println();
+			out.println("\t@Override");
+			out.println("\tpublic " + typeName + " newInstance() {");
+			out.println("\t\treturn new " + typeName + "();");
+			out.println("\t}");
+			out.println();
+			out.println("\t@Override");
+			out.println("\tpublic PropertyAccessor getAccessor(String fieldName) {");
+			out.println("\t\tswitch (fieldName) {");
+			for (String fieldName : accessors.keySet()) {
+				out.println("\t\tcase \"" + fieldName + "\":");
+				out.println("\t\t\treturn A_" + fieldName + ";");
+			}
+			out.println("\t\tdefault:");
+			out.println("\t\t\treturn null;");
+			out.println("\t\t}");
+			out.println("\t}");
+			out.println();
+			out.println("}");
+		}
+	}
+
+	/*
+	 * Anonymous PropertyAccessor calling the getter and the setter taking the declared field type,
+	 * null if the class does not have both of them.
+	 */
+	private String accessor(TypeElement type, String typeName, VariableElement f) {
+		String fieldName = f.getSimpleName().toString();
+		String cap = fieldName.substring(0, 1).toUpperCase() + fieldName.substring(1);
+		TypeMirror fieldType = processingEnv.getTypeUtils().erasure(f.asType());
+
+		String getterName;
+		if (fieldType.getKind() == TypeKind.BOOLEAN) {
+			getterName = fieldName.startsWith("is") ? fieldName : "is" + cap;
+		} else {
+			getterName = "get" + cap;
+		}
+		ExecutableElement getter = null;
+		ExecutableElement setter = null;
+		for (ExecutableElement m : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+			if (!m.getModifiers().contains(Modifier.PUBLIC) || m.getModifiers().contains(Modifier.STATIC)) {
+				continue;
+			}
+			String methodName = m.getSimpleName().toString();
+			if (getter == null && methodName.equals(getterName) && m.getParameters().isEmpty()) {
+				getter = m;
+			} else if (setter == null && methodName.equals("set" + cap) && m.getParameters().size() == 1
+					&& processingEnv.getTypeUtils().isSameType(fieldType,
+							processingEnv.getTypeUtils().erasure(m.getParameters().get(0).asType()))) {
+				setter = m;
+			}
+		}
+		if (getter == null || setter == null) {
+			return null;
+		}
+
+		String valueType = fieldType.getKind().isPrimitive()
+				? processingEnv.getTypeUtils().boxedClass((PrimitiveType) fieldType).getQualifiedName().toString()
+				: fieldType.toString();
+		StringBuilder sb = new StringBuilder();
+		sb.append("new PropertyAccessor() {\n");
+		sb.append("\t\t@Override\n");
+		sb.append("\t\tpublic Object get(Object target) throws InvocationTargetException {\n");
+		sb.append("\t\t\ttry {\n");
+		sb.append("\t\t\t\treturn ((").append(typeName).append(") target).").append(getterName).append("();\n");
+		sb.append("\t\t\t} catch (Exception e) {\n");
+		sb.append("\t\t\t\tthrow new InvocationTargetException(e);\n");
+		sb.append("\t\t\t}\n");
+		sb.append("\t\t}\n\n");
+		sb.append("\t\t@Override\n");
+		sb.append("\t\tpublic void set(Object target, Object value) throws InvocationTargetException {\n");
+		sb.append("\t\t\ttry {\n");
+		sb.append("\t\t\t\t((").append(typeName).append(") target).set").append(cap).append("((").append(valueType).append(") value);\n");
+		sb.append("\t\t\t} catch (Exception e) {\n");
+		sb.append("\t\t\t\tthrow new InvocationTargetException(e);\n");
+		sb.append("\t\t\t}\n");
+		sb.append("\t\t}\n");
+		String typedSetter = typedSetter(fieldType.getKind());
+		if (typedSetter != null) {
+			// unboxed setter for literal decoding
+			sb.append("\n\t\t@Override\n");
+			sb.append("\t\tpublic void ").append(typedSetter).append("(Object target, ").append(fieldType).append(" value) throws InvocationTargetException {\n");
+			sb.append("\t\t\ttry {\n");
+			sb.append("\t\t\t\t((").append(typeName).append(") target).set").append(cap).append("(value);\n");
+			sb.append("\t\t\t} catch (Exception e) {\n");
+			sb.append("\t\t\t\tthrow new InvocationTargetException(e);\n");
+			sb.append("\t\t\t}\n");
+			sb.append("\t\t}\n");
+		}
+		sb.append("\t}");
+		return sb.toString();
+	}
+
+	/*
+	 * Typed setter of PropertyAccessor for a primitive field type, null if there is none
+	 */
+	private static String typedSetter(TypeKind kind) {
+		switch (kind) {
+		case INT:
+			return "setInt";
+		case LONG:
+			return "setLong";
+		case FLOAT:
+			return "setFloat";
+		case DOUBLE:
+			return "setDouble";
+		case BOOLEAN:
+			return "setBoolean";
+		default:
+			return null;
+		}
+	}
+
+	private static boolean hasOWLProperty(Element e) {
+		for (AnnotationMirror a : e.getAnnotationMirrors()) {
+			if (((TypeElement) a.getAnnotationType().asElement()).getQualifiedName().contentEquals(OWL_PROPERTY)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static TypeElement superclass(TypeElement type) {
+		TypeMirror s = type.getSuperclass();
+		if (s.getKind() != TypeKind.DECLARED) {
+			return null;
+		}
+		return (TypeElement) ((DeclaredType) s).asElement();
+	}
+
+}
@@ -5,22 +5,49 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.jena.datatypes.xsd.XSDDatatype;
@@ -28,13 +55,16 @@ import org.apache.jena.geosparql.configuration.GeoSPARQLConfig;
 import org.apache.jena.geosparql.configuration.GeoSPARQLOperations;
 import org.apache.jena.geosparql.spatial.SpatialIndex;
 import org.apache.jena.geosparql.spatial.SpatialIndexException;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.ontology.OntClass;
+import org.apache.jena.ontology.OntDocumentManager;
 import org.apache.jena.ontology.OntModel;
 import org.apache.jena.ontology.OntModelSpec;
-import org.apache.jena.ontology.OntProperty;
 import org.apache.jena.ontology.OntResource;
 import org.apache.jena.ontology.ProfileRegistry;
-import org.apache.jena.ontology.Restriction;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryExecution;
@@ -54,24 +84,49 @@ import org.apache.jena.rdf.model.ResourceFactory;
 import org.apache.jena.rdf.model.SimpleSelector;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.reasoner.InfGraph;
 import org.apache.jena.reasoner.Reasoner;
 import org.apache.jena.reasoner.ReasonerFactory;
 import org.apache.jena.reasoner.ReasonerRegistry;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.shared.Lock;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.sparql.graph.GraphReadOnly;
 import org.apache.jena.util.FileManager;
-import org.apache.jena.vocabulary.OWL2;
+import org.apache.jena.vocabulary.OWL;
 import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.vocabulary.XSD;
 import org.apache.log4j.Logger;
 
 import org.dualist.ogm.annotations.OWLClass;
 import org.dualist.ogm.annotations.OWLProperty;
+import org.dualist.ogm.cache.MapObjectCache;
+import org.dualist.ogm.cache.ObjectCache;
+import org.dualist.ogm.event.CacheInvalidationListener;
 import org.dualist.ogm.event.LocationUpdateListener;
+import org.dualist.ogm.mapping.AccessorFactory;
+import org.dualist.ogm.mapping.ClassMapping;
+import org.dualist.ogm.mapping.FieldBinding;
+import org.dualist.ogm.mapping.Mapper;
+import org.dualist.ogm.mapping.MethodHandleAccessorFactory;
+import org.dualist.ogm.mapping.ProjectionMapping;
+import org.dualist.ogm.mapping.PropertyAccessor;
 import org.dualist.ogm.pojo.GraphResource;
 import org.dualist.ogm.pojo.GraphResource.Attribute;
 import org.dualist.ogm.pojo.GraphResource.AttributeRestriction;
+import org.dualist.ogm.pojo.LazyResourceList;
 import org.dualist.ogm.pojo.URI;
+import org.dualist.ogm.query.QueryCache;
+import org.dualist.ogm.query.QueryResultCache;
+import org.dualist.ogm.schema.RestrictionIndex;
+import org.dualist.ogm.schema.TypeHierarchy;
+import org.dualist.ogm.stats.DualistStats;
+import org.dualist.ogm.stats.DualistStats.EntryPoint;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
@@ -89,18 +144,59 @@ public class Dualist {
 	private static final Logger log = Logger
 			.getLogger(Dualist.class.getName());
 
-	HashMap<String, GraphResource> objectCache = new HashMap<>();
+	ObjectCache objectCache = new MapObjectCache();
+	
+	// resources being populated by populateFromGraph on the thread, resolves circular references even if the cache evicts them
+	final ThreadLocal<HashMap<String, GraphResource>> populating = ThreadLocal.withInitial(HashMap::new);
+	
+	// objects populated with a fetch plan on the thread, removed from the cache when the plan is fetched, see fetch
+	final ThreadLocal<List<GraphResource>> planned = ThreadLocal.withInitial(ArrayList::new);
+	
+	// records graph changes made outside the mapped POJO writes, see invalidatePending
+	CacheInvalidationListener cacheInvalidation = new CacheInvalidationListener();
+	// schema generation the cached objects were populated at, see invalidatePending
+	volatile long cacheSchemaGeneration;
+	
+	DualistStats stats = new DualistStats();
+	
+	// parsed SPARQL queries, see compileQuery
+	QueryCache queryCache;
+	
+	// results of queries by graph generation, null if not enabled
+	QueryResultCache queryResultCache;
+	
+	// batch of the createAll or upsertAll running on the thread, see WriteBatch
+	final ThreadLocal<WriteBatch> writeBatch = new ThreadLocal<>();
+	
+	// sorted resources of the types read by the paged getAll, by type URI, and the schema generation they were read at
+	Map<String, SubjectIndex> subjectIndexes = new ConcurrentHashMap<>();
+	long subjectIndexSchema;
 	
 	
 	Quadtree t = new Quadtree();
+	// the Quadtree is not thread-safe, queries share the read lock and updates take the write lock
+	final ReentrantReadWriteLock spatialLock = new ReentrantReadWriteLock();
     GeometryFactory gf = new GeometryFactory();
     
     HashMap<String, Geometry> resGeometries = new HashMap<>();
     
-    List<String> level0Classes = new LinkedList<>();
+    // namespaces of rdf:types which are not resource types, see isResourceType
+    Set<String> ignoredTypeNamespaces = ConcurrentHashMap.newKeySet();
  
 	
-	HashMap<String, Class> resourceClasses = new HashMap<String, Class>();
+	Map<String, Class<?>> resourceClasses = new ConcurrentHashMap<>();
+	
+	// mapping metadata of POJO classes, see getClassMapping
+	Map<Class<?>, ClassMapping> classMappings = new ConcurrentHashMap<>();
+	
+	// DTO classes of select, see getProjectionMapping
+	Map<Class<?>, ProjectionMapping<?>> projectionMappings = new ConcurrentHashMap<>();
+	
+	AccessorFactory accessorFactory = new MethodHandleAccessorFactory();
+	
+	// class hierarchy of the model, see getTypeHierarchy
+	volatile TypeHierarchy typeHierarchy;
+	volatile RestrictionIndex restrictionIndex;
 	
 	 protected OntModel model;
 
@@ -120,7 +216,46 @@ public class Dualist {
 	 /*
 	  * Enable/disable resolving SPARQL queries.
 	  */
-	protected boolean populateSparqlProperties = false;
+	protected boolean populateSparqlProperties = true;
+	
+	// populate referenced resources on access, see setLazyLoading
+	protected boolean lazyLoading = false;
+	
+	// depth of the referenced resources populated, see setPopulationDepth
+	protected int populationDepth = Integer.MAX_VALUE;
+	
+	// snapshot the mapped values of the populated objects, see setDirtyTracking
+	protected boolean dirtyTracking = false;
+	
+	// objects having a snapshot, written by flush
+	Map<GraphResource, Boolean> tracked = Collections.synchronizedMap(new WeakHashMap<>());
+	
+	// lock the model for reads and writes, see setConcurrent
+	protected volatile boolean concurrent = false;
+	
+	// allow copying the graph for snapshot, see setSnapshots
+	protected boolean snapshots = false;
+	
+	// number of critical sections of the model the thread is in, and 1 if the outermost one is a write
+	final ThreadLocal<int[]> lockDepth = ThreadLocal.withInitial(() -> new int[2]);
+	
+	// concurrent mode: the objects populated by the read of the thread, put to the object cache when the read ends
+	final ThreadLocal<HashMap<String, GraphResource>> unpublished = ThreadLocal.withInitial(HashMap::new);
+	
+	// concurrent mode: the reference objects of the cache resolved in place by the read of the thread, see claim
+	final ThreadLocal<IdentityHashMap<GraphResource, CountDownLatch>> claimed = ThreadLocal.withInitial(IdentityHashMap::new);
+	
+	// concurrent mode: the reference objects being resolved by some thread, by URI, counted down when they are published
+	final ConcurrentHashMap<String, CountDownLatch> resolving = new ConcurrentHashMap<>();
+	
+	// number of resources read with one query by a batch
+	static final int BATCH_SIZE = 500;
+	
+	// namespaces ignored by isResourceType by default
+	static final List<String> VOCABULARY_NAMESPACES = Arrays.asList(RDF.getURI(), RDFS.getURI(), OWL.getURI(), XSD.getURI(),
+			"http://www.w3.org/2003/01/geo/wgs84_pos#", "http://www.opengis.net/ont/geosparql#");
+	
+	static final String SUBJECT_STATEMENTS = "SELECT ?resource ?p ?o WHERE { ?resource ?p ?o }";
 
 	/*
 	 * Jena/OWL - Java POJO mapping layer.
@@ -136,11 +271,40 @@ public class Dualist {
 //		GeoSPARQLConfig.setupMemoryIndex();
 		
 		model = ModelFactory.createOntologyModel(ProfileRegistry.OWL_LITE_LANG);
+		ignoredTypeNamespaces.addAll(VOCABULARY_NAMESPACES);
+		cacheInvalidation.register(model);
+		stats.setCache(objectCache);
+		queryCache = new QueryCache(model);
 		
 	
 		
 	}
 	
+	/*
+	 * Snapshot of the source instance, see snapshot()
+	 */
+	private Dualist(Dualist source, OntModel model) {
+		this.model = model;
+		cacheInvalidation.register(model);
+		stats.setCache(objectCache);
+		queryCache = new QueryCache(model);
+		ignoredTypeNamespaces.addAll(source.ignoredTypeNamespaces);
+		resourceClasses.putAll(source.resourceClasses);
+		classMappings.putAll(source.classMappings);
+		projectionMappings.putAll(source.projectionMappings);
+		accessorFactory = source.accessorFactory;
+		baseNs = source.baseNs;
+		convertNamespaceMode = source.convertNamespaceMode;
+		namespaceMappings = source.namespaceMappings;
+		reasoner = source.reasoner;
+		populateSparqlProperties = source.populateSparqlProperties;
+		lazyLoading = source.lazyLoading;
+		populationDepth = source.populationDepth;
+		concurrent = source.concurrent;
+		dirtyTracking = source.dirtyTracking;
+		snapshots = source.snapshots;
+	}
+	
 	public void initSpatialModel() {
 		Model smodel = GeoSPARQLOperations.convertGeoPredicates(model, true);
 		GeoSPARQLOperations.applyPrefixes(smodel);
@@ -159,7 +323,14 @@ public class Dualist {
 		try {
 			dataset = SpatialIndex.wrapModel(imodel);
 	//		dataset.setDefaultModel(imodel);
+			cacheInvalidation.unregister(model);
 			model = imodel;
+			cacheInvalidation.register(model);
+			typeHierarchy = null;
+			restrictionIndex = null;
+			subjectIndexes.clear();
+			queryCache = new QueryCache(model);
+			resetMappings();
 	//		SpatialIndex.buildSpatialIndex(dataset);
 		
 		} catch (SpatialIndexException e) {
@@ -179,6 +350,9 @@ public class Dualist {
 	 */
 	public void registerResourceClass(String owlClassUri, Class className) {
 		resourceClasses.put(model.expandPrefix(owlClassUri), className);
+		getClassMapping(className);
+		if( typeHierarchy != null)
+			typeHierarchy.clearResolved();
 		log.error("Registered class " + className + " for resource type " + owlClassUri);
 	}
 	
@@ -186,45 +360,13 @@ public class Dualist {
 	private Class resolveResourceClass(String uri) {
 		Class defClass = null;
 		try {
-			defClass = resourceClasses.get(model.expandPrefix(uri));
+			if( uri != null)
+				defClass = getTypeHierarchy().resolve(model.expandPrefix(uri), resourceClasses);
 		}
 		catch( Exception e ) {
 			log.error("Error resolving class " + uri);
 			e.printStackTrace();
 		}
-			
-		if( defClass == null) {
-			String superC = this.getSuperClass(model.expandPrefix(uri));
-			if( superC != null)
-				defClass = resourceClasses.get(superC);
-			if( defClass == null) {
-				String superC2 = this.getSuperClass(superC);
-				if( superC2 != null)
-						defClass = resourceClasses.get(superC2);
-				if( defClass == null) {
-					String superC3 = this.getSuperClass(superC2);
-					if( superC3 != null)
-						defClass = resourceClasses.get(superC3);
-					if( defClass == null) {
-						String superC4 = this.getSuperClass(superC3);
-						if( superC4 != null)
-							defClass = resourceClasses.get(superC4);
-					}
-					else {
-							registerResourceClass( uri,  defClass);
-					}
-
-				}
-				else {
-					registerResourceClass( uri,  defClass);
-				}
-
-			}
-			else {
-				registerResourceClass( uri,  defClass);
-			}
-		}
-
 
 		if( defClass == null) {
 			defClass = GraphResource.class;	
@@ -233,6 +375,41 @@ public class Dualist {
 		return defClass;
 	}
 	
+	/*
+	 * Index of the cardinality restrictions of the properties, rebuilt with the class hierarchy
+	 */
+	public RestrictionIndex getRestrictionIndex() {
+		Lock lock = enterRead();
+		try {
+			TypeHierarchy hierarchy = getTypeHierarchy();
+			RestrictionIndex index = restrictionIndex;
+			if( index == null || index.getGeneration() != hierarchy.getGeneration()) {
+				index = new RestrictionIndex(model, hierarchy);
+				restrictionIndex = index;
+			}
+			return index;
+		} finally {
+			leave(lock);
+		}
+	}
+	
+	/*
+	 * Index of the class hierarchy, rebuilt when the class definitions of the model change
+	 */
+	public TypeHierarchy getTypeHierarchy() {
+		Lock lock = enterRead();
+		try {
+			long generation = cacheInvalidation.getSchemaGeneration();
+			TypeHierarchy hierarchy = typeHierarchy;
+			if( hierarchy == null || hierarchy.getGeneration() != generation) {
+				hierarchy = new TypeHierarchy(model, generation);
+				typeHierarchy = hierarchy;
+			}
+			return hierarchy;
+		} finally {
+			leave(lock);
+		}
+	}
 	
 	
 /*	private Class resolveResourceClass(String uri) {
@@ -291,28 +468,48 @@ public class Dualist {
 
 
 	public void loadModelFile(String fileName, String format) {
-		InputStream in = FileManager.get().open(fileName);
-
-		model.read(in, null, format);
+		Lock lock = enterWrite();
+		try {
+			InputStream in = FileManager.get().open(fileName);
 
+			model.read(in, null, format);
+			resetMappings();
+		} finally {
+			leave(lock);
+		}
 	}
 
 	public void loadModelFromURL(String url) {
-		model.read(url);
-
+		Lock lock = enterWrite();
+		try {
+			model.read(url);
+			resetMappings();
+		} finally {
+			leave(lock);
+		}
 	}
 
 	public void loadModelFromInputStream(InputStream is, String type) {
-		model.read(is, null, type);
-
+		Lock lock = enterWrite();
+		try {
+			model.read(is, null, type);
+			resetMappings();
+		} finally {
+			leave(lock);
+		}
 	}
 
 	public void loadModelFromString(String graphString, String type) {
+		Lock lock = enterWrite();
+		try {
 
-		InputStream stream = new ByteArrayInputStream(
-				graphString.getBytes(StandardCharsets.UTF_8));
-		model.read(stream, null, type);
-
+			InputStream stream = new ByteArrayInputStream(
+					graphString.getBytes(StandardCharsets.UTF_8));
+			model.read(stream, null, type);
+			resetMappings();
+		} finally {
+			leave(lock);
+		}
 	}
 
 	public void dumpModel() {
@@ -385,6 +582,8 @@ public class Dualist {
 	 * 
 	 */
 	public Resource create(GraphResource res, String namespace) {
+		Lock lock = enterWrite();
+		cacheInvalidation.suspend();
 		try {
 			Resource resourceClass;
 			Resource resource = null;
@@ -451,8 +650,11 @@ public class Dualist {
 			String name = "";
 	//		if( res.get)
 			
+			WriteBatch batch = writeBatch.get();
+			
 			// resource does not exist.create new
-			if (resource == null || !model.contains(resource, null)) {
+			boolean exists = resource != null && model.contains(resource, null) && !(batch != null && batch.replacing.contains(uri));
+			if (!exists && !(batch != null && uri != null && batch.contains(uri))) {
 				if (uri == null) { // if URI is not set, create a new URI
 									// with random hash
 					String resName = "";					
@@ -464,12 +666,17 @@ public class Dualist {
 					res.setUri(uri);
 				}
 
-				resource = model.createResource(uri, resourceClass);
+				// in a batch, the triples are added to the graph at the end of the batch
+				resource = (batch != null ? batch.buffer : model).createResource(uri, resourceClass);
 				
 				res.setTypes(new String[] {resourceClass.toString()});
 				res.setType(resourceClass.toString());
-				if( !res.getClass().toString().contains( "GraphResource"))
-					this.putToCache(res);
+				if( !res.getClass().toString().contains( "GraphResource")) {
+					if( batch != null)
+						batch.cached.add(res);
+					else
+						this.putToCache(res);
+				}
 				
 				log.debug("Dualist.create, created " + uri);
 				
@@ -496,41 +703,336 @@ public class Dualist {
 			 * value.toString()); } }
 			 */
 
-			Field[] fields = getAllClassFields( res.getClass());
-			for (Field f : fields) {
-				createAttribute( f, resource, res);
+			for (FieldBinding b : getClassMapping(res.getClass()).getBindings()) {
+				createAttribute( b, resource, res);
 			}
+			if( dirtyTracking)
+				snapshot(res);
 			log.debug("Created resource having URI " + resource.getURI() );
 			
 			if( res.getLat() > 2 && res.getLon() > 2) {
-				updateSpatialIndex(res);
+				if( batch != null)
+					batch.located.add(res);
+				else
+					updateSpatialIndex(res);
 			}
 			
 			return resource;
 
 		} catch (Exception e) {
 			log.error("Exception during creating a graph ", e);
+		} finally {
+			cacheInvalidation.resume();
+			leave(lock);
 		}
 		return null;
 	}
 
+	/*
+	 * Stores POJO resources in the graph, using default namespace. See createAll(Collection, String).
+	 */
+	public List<Resource> createAll(Collection<? extends GraphResource> resources) {
+		return createAll(resources, baseNs);
+	}
+	
+	/*
+	 * Stores POJO resources in the graph, in defined namespace, as create() does for each of them. The triples of
+	 * all the resources are collected first and added to the graph at once, so the listeners and the reasoner of the
+	 * graph see one change. Resources referenced by several of the objects are created once.
+	 * 
+	 * Returns the created resources in the order of the objects; the existing resource if the graph already has
+	 * the URI, null if the object could not be created.
+	 */
+	public List<Resource> createAll(Collection<? extends GraphResource> resources, String namespace) {
+		List<Resource> created = new ArrayList<>(resources.size());
+		if( writeBatch.get() != null) {
+			// nested in a batch already
+			for( GraphResource res: resources)
+				created.add(create(res, namespace));
+			return created;
+		}
+		WriteBatch batch = new WriteBatch();
+		writeBatch.set(batch);
+		Lock lock = enterWrite();
+		cacheInvalidation.suspend();
+		try {
+			for( GraphResource res: resources)
+				created.add(create(res, namespace));
+			writeBatch.remove();
+			
+			log.debug("Dualist.createAll, created " + batch.cached.size() + " resources, " + batch.buffer.size() + " triples");
+			apply(batch, Collections.emptyList());
+			inModel(created, batch);
+		} catch (Exception e) {
+			log.error("Exception during creating a graph ", e);
+		} finally {
+			writeBatch.remove();
+			cacheInvalidation.resume();
+			leave(lock);
+		}
+		return created;
+	}
+	
+	/*
+	 * Stores POJO resources in the graph, replacing the existing ones, as upsert() does for each of them. The
+	 * resources are written to a batch first and compared with their asserted statements in the graph; only the
+	 * statements which differ are removed and added, at once.
+	 */
+	public List<Resource> upsertAll(Collection<? extends GraphResource> resources) {
+		List<Resource> created = new ArrayList<>(resources.size());
+		WriteBatch outer = writeBatch.get();
+		WriteBatch batch = new WriteBatch();
+		Lock lock = enterWrite();
+		cacheInvalidation.suspend();
+		try {
+			for( GraphResource res: resources) {
+				if( res.getUri() != null) {
+					batch.replacing.add(res.getUri());
+					objectCache.remove(res.getUri());
+				}
+			}
+			writeBatch.set(batch);
+			for( GraphResource res: resources)
+				created.add(create(res));
+			restore(outer);
+			
+			// asserted statements of the replaced resources which are not written again
+			List<Statement> removed = new ArrayList<>();
+			for( String uri: batch.replacing)
+				diff(model.getResource(uri), null, batch, removed);
+			apply(batch, removed);
+			inModel(created, batch);
+		} catch (Exception e) {
+			log.error("Exception during modifying of a graph ", e);
+		} finally {
+			restore(outer);
+			cacheInvalidation.resume();
+			leave(lock);
+		}
+		return created;
+	}
+	
+	/*
+	 * Writes the changes of the tracked objects to the graph, see setDirtyTracking. Only the fields whose values
+	 * differ from the values recorded when the object was populated or last written are written, in one batch.
+	 * Returns the number of objects written.
+	 */
+	public int flush() {
+		List<GraphResource> objects;
+		synchronized( tracked) {
+			objects = new ArrayList<>(tracked.keySet());
+		}
+		List<GraphResource> written = new ArrayList<>();
+		WriteBatch outer = writeBatch.get();
+		Lock lock = enterWrite();
+		cacheInvalidation.suspend();
+		try {
+			WriteBatch batch = new WriteBatch();
+			List<Statement> removed = new ArrayList<>();
+			for( GraphResource res: objects) {
+				if( res.getUri() == null || res.isReference())
+					continue;
+				List<FieldBinding> changed = changedBindings(res);
+				if( changed.isEmpty())
+					continue;
+				render(res, changed, batch);
+				diff(model.getResource(res.getUri()), changed, batch, removed);
+				written.add(res);
+			}
+			apply(batch, removed);
+			for( GraphResource res: written) {
+				putToCache(res);
+				snapshot(res);
+			}
+			log.debug("Dualist.flush, wrote " + written.size() + " of " + objects.size() + " objects");
+		} catch (Exception e) {
+			log.error("Exception during modifying of a graph ", e);
+		} finally {
+			restore(outer);
+			cacheInvalidation.resume();
+			leave(lock);
+		}
+		return written.size();
+	}
+	
+	/*
+	 * True if the object has fields changed since it was populated or written. Objects without a recorded
+	 * state are always dirty.
+	 */
+	public boolean isDirty(GraphResource res) {
+		try {
+			return !changedBindings(res).isEmpty();
+		} catch (ReflectiveOperationException e) {
+			log.error("Could not read the fields of " + res.getUri(), e);
+			return true;
+		}
+	}
+	
+	/*
+	 * Records the mapped field values of the object, as they are in the graph
+	 */
+	private void snapshot(GraphResource res) {
+		try {
+			FieldBinding[] bindings = getClassMapping(res.getClass()).getBindings();
+			Object[] values = new Object[bindings.length];
+			for( int i = 0; i < bindings.length; i++) {
+				if( isWritten(bindings[i]))
+					values[i] = snapshotValue(requireGetter(bindings[i], res).get(res));
+			}
+			res.setSnapshot(values);
+			tracked.put(res, Boolean.TRUE);
+		} catch (ReflectiveOperationException e) {
+			log.error("Could not read the fields of " + res.getUri(), e);
+		}
+	}
+	
+	/*
+	 * Value of a field compared by the dirty check. Resources are compared by URI, and lists are copied.
+	 */
+	static Object snapshotValue(Object value) {
+		if( value instanceof GraphResource)
+			return ((GraphResource) value).getUri() != null ? ((GraphResource) value).getUri() : value;
+		if( value instanceof URI)
+			return ((URI) value).getUri();
+		if( value instanceof List) {
+			List<?> elements = value instanceof LazyResourceList ? ((LazyResourceList<?>) value).references() : (List<?>) value;
+			List<Object> copy = new ArrayList<>(elements.size());
+			for( Object e: elements)
+				copy.add(snapshotValue(e));
+			return copy;
+		}
+		return value;
+	}
+	
+	/*
+	 * The bindings written by createAttribute whose values differ from the snapshot of the object, all of them if
+	 * the object has no snapshot
+	 */
+	private List<FieldBinding> changedBindings(GraphResource res) throws ReflectiveOperationException {
+		FieldBinding[] bindings = getClassMapping(res.getClass()).getBindings();
+		Object[] snapshot = res.getSnapshot();
+		if( snapshot != null && snapshot.length != bindings.length)
+			snapshot = null;
+		List<FieldBinding> changed = new ArrayList<>();
+		for( int i = 0; i < bindings.length; i++) {
+			FieldBinding b = bindings[i];
+			if( !isWritten(b))
+				continue;
+			if( snapshot == null || !Objects.equals(snapshot[i], snapshotValue(requireGetter(b, res).get(res))))
+				changed.add(b);
+		}
+		return changed;
+	}
+	
+	/*
+	 * True if createAttribute writes the field
+	 */
+	private static boolean isWritten(FieldBinding b) {
+		return !b.isComplex() && b.getProperty().query().length() <= 1;
+	}
+	
+	/*
+	 * Writes the fields of the object to the batch
+	 */
+	private void render(GraphResource res, List<FieldBinding> bindings, WriteBatch batch) throws Exception {
+		WriteBatch outer = writeBatch.get();
+		writeBatch.set(batch);
+		try {
+			Resource target = batch.buffer.getResource(res.getUri());
+			for( FieldBinding b: bindings)
+				createAttribute(b, target, res);
+		} finally {
+			restore(outer);
+		}
+	}
+	
+	/*
+	 * Compares the asserted statements of the subject with the predicates of the bindings, or with any predicate if
+	 * bindings is null, with the statements written to the batch. The statements the graph has already are
+	 * dropped from the batch, and the ones the batch does not have are added to removed.
+	 */
+	private void diff(Resource subject, List<FieldBinding> bindings, WriteBatch batch, List<Statement> removed) {
+		Resource target = batch.buffer.getResource(subject.getURI());
+		List<Property> properties = new ArrayList<>();
+		if( bindings == null)
+			properties.add(null);
+		else {
+			Set<String> predicates = new LinkedHashSet<>();
+			for( FieldBinding b: bindings)
+				if( predicates.add(b.getPredicate()))
+					properties.add(model.getProperty(b.getPredicate()));
+		}
+		for( Property property: properties) {
+			StmtIterator iter = model.getBaseModel().listStatements(subject, property, (RDFNode) null);
+			while( iter.hasNext()) {
+				Statement stmt = iter.nextStatement();
+				if( batch.buffer.contains(target, stmt.getPredicate(), stmt.getObject()))
+					batch.buffer.remove(target, stmt.getPredicate(), stmt.getObject());
+				else
+					removed.add(stmt);
+			}
+			iter.close();
+		}
+	}
+	
+	/*
+	 * Writes a batch to the graph: removes the statements, adds the buffer, then updates the cache and the spatial index
+	 */
+	private void apply(WriteBatch batch, List<Statement> removed) {
+		if( !removed.isEmpty())
+			model.remove(removed);
+		if( !batch.buffer.isEmpty())
+			model.add(batch.buffer);
+		for( GraphResource res: batch.cached)
+			putToCache(res);
+		for( GraphResource res: batch.located)
+			updateSpatialIndex(res);
+	}
+	
+	/*
+	 * Replaces the resources of the batch buffer with the resources of the graph
+	 */
+	private void inModel(List<Resource> resources, WriteBatch batch) {
+		for( int i = 0; i < resources.size(); i++) {
+			Resource r = resources.get(i);
+			if( r != null && r.getModel() == batch.buffer)
+				resources.set(i, model.getResource(r.getURI()));
+		}
+	}
+	
+	private void restore(WriteBatch outer) {
+		if( outer != null)
+			writeBatch.set(outer);
+		else
+			writeBatch.remove();
+	}
+	
 	public void deleteFromSpatialIndex(GraphResource res) {
 	//	Point pt = (Point)resGeometries.get(uri);
-		Point pt = res.getGeo();
-		if( pt != null)		
-			t.remove(pt.getEnvelopeInternal(), pt);
+		spatialLock.writeLock().lock();
+		try {
+			Point pt = res.getGeo();
+			if( pt != null)		
+				t.remove(pt.getEnvelopeInternal(), pt);
+		} finally {
+			spatialLock.writeLock().unlock();
+		}
 	}
 	
 	public void updateSpatialIndex(GraphResource res) {
 	//	Point pt = (Point)resGeometries.get(res.getUri());
-	
-		Point pt = res.getGeo();
-		if( pt != null)		
-			t.remove(pt.getEnvelopeInternal(), pt);
-		pt = gf.createPoint(new Coordinate(res.getLon(), res.getLat()));
+		Point pt = gf.createPoint(new Coordinate(res.getLon(), res.getLat()));
 		pt.setUserData(res);
-		res.setGeo(pt);
-	    t.insert(pt.getEnvelopeInternal(), pt);
+		spatialLock.writeLock().lock();
+		try {
+			Point old = res.getGeo();
+			if( old != null)		
+				t.remove(old.getEnvelopeInternal(), old);
+			res.setGeo(pt);
+		    t.insert(pt.getEnvelopeInternal(), pt);
+		} finally {
+			spatialLock.writeLock().unlock();
+		}
 //	    resGeometries.put(res.getUri(), pt);
 		
 	}	
@@ -586,71 +1088,66 @@ public class Dualist {
 	    return ps;
 	}
 	*/
+	/*
+	 * Visits the items of the spatial index in the envelope. The items are collected under the read lock of the
+	 * index and visited after it, so the visitor may read and write the graph. Reference objects are resolved
+	 * before they are visited.
+	 */
 	public void querySpatial( Envelope e,ItemVisitor v) {
-		t.query(e, v);
-		return;
+		List<?> items;
+		spatialLock.readLock().lock();
+		try {
+			items = t.query(e);
+		} finally {
+			spatialLock.readLock().unlock();
+		}
+		for( Object item: items) {
+			// references of a snapshot, or objects another thread is populating
+			Object res = ((Geometry) item).getUserData();
+			if( res instanceof GraphResource && ((GraphResource) res).isReference())
+				resolve((GraphResource) res);
+			v.visitItem(item);
+		}
 	}
 
 	
 	public URI createEmptyResource( URI type ) {
-		Resource resourceClass = model
-				.getResource(model.expandPrefix(type.toString()));
-		String uri = baseNs + resourceClass.getLocalName() + "."
-				+ UUID.randomUUID().toString();
-
-		Resource resource = model.createResource(uri, resourceClass);
-		return new URI( resource.getURI());
+		Lock lock = enterWrite();
+		try {
+			Resource resourceClass = model
+					.getResource(model.expandPrefix(type.toString()));
+			String uri = baseNs + resourceClass.getLocalName() + "."
+					+ UUID.randomUUID().toString();
+
+			Resource resource = model.createResource(uri, resourceClass);
+			return new URI( resource.getURI());
+		} finally {
+			leave(lock);
+		}
 	}
 	
-	private void createAttribute(Field f, Resource resource, GraphResource res) throws Exception {
-		if (f.isAnnotationPresent(OWLProperty.class)) {
-	
-			OWLProperty taf = f.getAnnotation(OWLProperty.class);
-	
-			if(taf.value().contains("^")) {
-				log.debug( "Complex property, skip: " + f.getName() + ", graph property " + taf.value());
-				return;
-			}
-			if(taf.query().length() > 1) {
-				log.debug( "Query property, skip: " + f.getName() );
-				return;
-			}
-			
-			
-			Method getter;
-	
-			if( f.getType().toString().equals( "boolean")) {
-				if( f.getName().startsWith( "is")) {
-				getter = res.getClass()
-						.getMethod(f.getName(), null);
-				}
-				else
-				{
-					getter = res.getClass()
-							.getMethod("is"
-									+ f.getName().substring(0, 1).toUpperCase()
-									+ f.getName().substring(1), null);
-				}
-			}
-			else {
-				getter = res.getClass()
-						.getMethod("get"
-								+ f.getName().substring(0, 1).toUpperCase()
-								+ f.getName().substring(1), null);
-	
-			}
+	private void createAttribute(FieldBinding b, Resource resource, GraphResource res) throws Exception {
+		OWLProperty taf = b.getProperty();
 	
-			Object value = getter.invoke(res); // invoke getXXX method
-			if( value == null) {
-//				log.debug("Method call returned null value: " + getter.getName());
-			}
-			else {
-				Property property = model
-					.getProperty(model.expandPrefix(taf.value()));
-			
-				createGraphAttribute( resource, property, value,taf.populateReferencedResource() );
-//				log.debug( "Handled attribute " + f.getName() + ", graph property " + taf.value() +  ", value " + value.toString());
-			}
+		if(b.isComplex()) {
+			log.debug( "Complex property, skip: " + b.getName() + ", graph property " + taf.value());
+			return;
+		}
+		if(taf.query().length() > 1) {
+			log.debug( "Query property, skip: " + b.getName() );
+			return;
+		}
+		
+		Object value = requireGetter(b, res).get(res); // invoke getXXX method
+		if( value == null) {
+//			log.debug("Method call returned null value: " + b.getGetter().getName());
+		}
+		else {
+			Property property = model
+				.getProperty(b.getPredicate());
+		
+			createGraphAttribute( resource, property, value,taf.populateReferencedResource() );
+//			log.debug( "Handled attribute " + b.getName() + ", graph property " + taf.value() +  ", value " + value.toString());
 		}
 	}	
 			
@@ -680,6 +1177,31 @@ public class Dualist {
 				Literal l = ResourceFactory.createTypedLiteral((Boolean)value);
 				resource.addLiteral(property, l);
 			}
+			else if (value instanceof Long || value instanceof BigDecimal || value instanceof BigInteger) {
+
+				Literal l = ResourceFactory.createTypedLiteral(value); // xsd:long, xsd:decimal, xsd:integer
+				resource.addLiteral(property, l);
+			}
+			else if (value instanceof LocalDate) {
+
+				Literal l = ResourceFactory.createTypedLiteral(value.toString(), XSDDatatype.XSDdate);
+				resource.addLiteral(property, l);
+			}
+			else if (value instanceof LocalTime) {
+
+				Literal l = ResourceFactory.createTypedLiteral(value.toString(), XSDDatatype.XSDtime);
+				resource.addLiteral(property, l);
+			}
+			else if (value instanceof LocalDateTime || value instanceof OffsetDateTime || value instanceof Instant) {
+
+				Literal l = ResourceFactory.createTypedLiteral(value.toString(), XSDDatatype.XSDdateTime);
+				resource.addLiteral(property, l);
+			}
+			else if (value instanceof ZonedDateTime) {
+
+				Literal l = ResourceFactory.createTypedLiteral(((ZonedDateTime)value).toOffsetDateTime().toString(), XSDDatatype.XSDdateTime);
+				resource.addLiteral(property, l);
+			}
 			else if (value instanceof GraphResource) {
 	
 				Resource propResource;
@@ -709,10 +1231,13 @@ public class Dualist {
 				}
 				// if a list of GraphResources
 				else {
-					for (GraphResource fr : (List<GraphResource>) value) {
+					// references of a lazy list are not populated for writing them, they exist in the graph
+					boolean lazy = value instanceof LazyResourceList;
+					List<? extends GraphResource> resources = listedResources((List<?>) value);
+					for (GraphResource fr : resources) {
 	
 						Resource propResource;
-						if(populateReferencedResource)
+						if(populateReferencedResource && !(lazy && fr.isReference()))
 							propResource = create(fr);
 						else {
 							if( fr.getUri() == null) {
@@ -744,83 +1269,83 @@ public class Dualist {
 	
 	
 	public URI clone( URI resourceUri) {
-		Resource resource = model
-				.getResource(model.expandPrefix(resourceUri.toString()));
-		StmtIterator iter1 = model.listStatements(
-				new SimpleSelector(resource, RDF.type, (RDFNode) null));
+		Lock lock = enterWrite();
+		try {
+			Resource resource = model
+					.getResource(model.expandPrefix(resourceUri.toString()));
+			StmtIterator iter1 = model.listStatements(
+					new SimpleSelector(resource, RDF.type, (RDFNode) null));
 		
-			Statement stmt1 = iter1.nextStatement(); // get next statement
+				Statement stmt1 = iter1.nextStatement(); // get next statement
 
-			RDFNode object1 = stmt1.getObject(); // get the object
-			String type = object1.toString();		
-		iter1.close();
-		Resource resourceClass = model
-				.getResource(model.expandPrefix(type.toString()));
-		String newUri = baseNs + resourceClass.getLocalName() + "."
-				+ UUID.randomUUID().toString();
+				RDFNode object1 = stmt1.getObject(); // get the object
+				String type = object1.toString();		
+			iter1.close();
+			Resource resourceClass = model
+					.getResource(model.expandPrefix(type.toString()));
+			String newUri = baseNs + resourceClass.getLocalName() + "."
+					+ UUID.randomUUID().toString();
 
-		Resource newRes = model.createResource(newUri, resourceClass);
+			Resource newRes = model.createResource(newUri, resourceClass);
 		
-		StmtIterator iter = model.listStatements(
-				new SimpleSelector(resource, null, (RDFNode) null));
-		List<Statement> sts = new LinkedList<>();
-		while (iter.hasNext()) {
-			sts.add( iter.nextStatement()); // get next statement
-		}
-		iter.close();
-		for( Statement stmt:sts ) {
+			StmtIterator iter = model.listStatements(
+					new SimpleSelector(resource, null, (RDFNode) null));
+			List<Statement> sts = new LinkedList<>();
+			while (iter.hasNext()) {
+				sts.add( iter.nextStatement()); // get next statement
+			}
+			iter.close();
+			for( Statement stmt:sts ) {
 			
-			Resource subject = stmt.getSubject(); // get the subject
-			Property predicate = stmt.getPredicate(); // get the predicate
-			RDFNode object = stmt.getObject(); // get the object
+				Resource subject = stmt.getSubject(); // get the subject
+				Property predicate = stmt.getPredicate(); // get the predicate
+				RDFNode object = stmt.getObject(); // get the object
 	
-			model.add(newRes, predicate, object);
-		}
-		return new URI(newUri);
+				model.add(newRes, predicate, object);
+			}
+			return new URI(newUri);
 		
+		} finally {
+			leave(lock);
+		}
 	}
 	
 	
 	/*
 	 * Modifies a POJO resource in the graph. Does not delete the resource, just modifies the fields represented in this class
 	 * 	Does not work with alternative OWLProperty attributes (value2, value3....)
+	 * Only the statements which differ from the graph are removed and added. With dirty tracking on, only the fields
+	 * changed since the object was populated or written are compared.
 	 */
 	public void modify(GraphResource res) {
+		Lock lock = enterWrite();
+		cacheInvalidation.suspend();
 		try {
 			log.debug("Dualist.modify " + res.getUri());
 
 			String uri = res.getUri();
-			Resource resource = null;
-			if (uri == null) { // if URI is not set, create a new URI with
-								// random hash
+			if (uri == null) { 
 				return;
-			} else {
-				// check if resource exists
-				resource = model.getResource(uri);
-			}
-			if (resource == null) { // if URI is not set, create a new URI with
-									// random hash
-				return;
-			}
-		
-			Field[] fields = getAllClassFields( res.getClass());
-			for (Field f : fields) {
-				if (f.isAnnotationPresent(OWLProperty.class)) {
-					OWLProperty taf = f.getAnnotation(OWLProperty.class);
-					
-					Property property = model
-							.getProperty(model.expandPrefix(taf.value()));
-					resource.removeAll(property);
-					
-					createAttribute(f,  resource, res) ;
-				}
 			}
 			
+			// only the changed statements of the changed fields are written
+			WriteBatch batch = new WriteBatch();
+			List<Statement> removed = new ArrayList<>();
+			List<FieldBinding> changed = changedBindings(res);
+			render(res, changed, batch);
+			diff(model.getResource(uri), changed, batch, removed);
+			apply(batch, removed);
+			
 			// update the object in the cache
 			putToCache( res);
+			if( dirtyTracking)
+				snapshot(res);
 
 		} catch (Exception e) {
 			log.error("Exception during modifying of a graph ", e);
+		} finally {
+			cacheInvalidation.resume();
+			leave(lock);
 		}
 	}
 
@@ -833,37 +1358,36 @@ public class Dualist {
 	 * Does not work with alternative OWLProperty attributes (value2, value3....)
 	 */
 	public void modifyAttribute(GraphResource res, String attributeName)  {
+		Lock lock = enterWrite();
+		cacheInvalidation.suspend();
 		try {
 			
-		Field field = getClassField(res.getClass(),attributeName);
-		if( field==null) {
+		FieldBinding binding = getClassMapping(res.getClass()).getBinding(attributeName);
+		if( binding==null) {
 			log.error("No field " + attributeName + " in class " + res.getClass());
 			throw new RuntimeException("No field " + attributeName + " in class " + res.getClass());
 		
 		}
 
-		OWLProperty taf = field.getAnnotation(OWLProperty.class);
-		
 		Property property = model
-				.getProperty(model.expandPrefix(taf.value()));
+				.getProperty(binding.getPredicate());
 
 		Resource resource = model.getResource(res.getUri());
 
 		
 		resource.removeAll(property);
-		createAttribute(field, resource, res);
+		createAttribute(binding, resource, res);
 		
 		if( property.getLocalName().equals("lat") || property.getLocalName().equals("long") ) 
 			log.error("Do not update location with modifyAttribute method! Use updateLocation instead");
 
 		
-		} catch (NoSuchFieldException e) {
-			log.error("No field " + attributeName + " in class " + res.getClass());
-			// TODO Auto-generated catch block
-			e.printStackTrace();
 		} catch (Exception e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
+		} finally {
+			cacheInvalidation.resume();
+			leave(lock);
 		}
 	}
 	
@@ -875,6 +1399,8 @@ public class Dualist {
 	 * Does not work with alternative OWLProperty attributes (value2, value3....)
 	 */
 	public void updateLocation(GraphResource res, float lat, float lon, boolean writeToGraph)  {
+		Lock lock = enterWrite();
+		cacheInvalidation.suspend();
 		try {
 		if(writeToGraph) {	
 			this.modifyAttributeDirect(res.getUri(), "http://www.w3.org/2003/01/geo/wgs84_pos#lat", lat);
@@ -887,6 +1413,9 @@ public class Dualist {
 		}catch (Exception e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
+		} finally {
+			cacheInvalidation.resume();
+			leave(lock);
 		}
 	}
 	
@@ -894,53 +1423,40 @@ public class Dualist {
 	
 	/*
 	 * Warning! This method updates attribute value in graph directly and does not update POJO objects. You should always reload related POJOs after calling this method.
-	 * Method removes resource pojo from cache.
+	 * The resource pojo and the cached pojos referring to it are invalidated in the cache.
 	 * 
 	 * returns URI of the new attribute
 	 */
 	
 	public String modifyAttributeDirect(String resUri, String attribute, Object value)  {
-		Resource resource = model.getResource(model.expandPrefix(resUri));
-		Property property = model.getProperty(model.expandPrefix(attribute));
+		Lock lock = enterWrite();
+		try {
+			Resource resource = model.getResource(model.expandPrefix(resUri));
+			Property property = model.getProperty(model.expandPrefix(attribute));
 		
-		if( !model.containsResource(resource)) {
-			log.error("Resource not found in modifyAttributeDirect: " + resUri);
-		}
+			if( !model.containsResource(resource)) {
+				log.error("Resource not found in modifyAttributeDirect: " + resUri);
+			}
 
-		resource.removeAll(property);
-		model.removeAll(resource,property, (RDFNode) null);
-		if( value != null)
-			createGraphAttribute(resource, property, value,false);
+			resource.removeAll(property);
+			model.removeAll(resource,property, (RDFNode) null);
+			if( value != null)
+				createGraphAttribute(resource, property, value,false);
 		
-	//	objectCache.remove(resUri);
+		//	objectCache.remove(resUri);
 
-		return property.getURI();
+			return property.getURI();
 		
+		} finally {
+			leave(lock);
+		}
 	}
 	/*
 	 * Stores a POJO resource in the graph. If the resource doesn't exist, create it.
 	 * NOTE: if the graph resource exists, the method deletes all attributes, also if there are attributes not represented by this class.
 	 */
 	public void upsert(GraphResource res) {
-		try {
-
-			String uri = res.getUri();
-			Resource resource = null;
-			if( uri != null) {
-			// check if resource exists
-				resource = model.getResource(uri);
-				if( model.containsResource(resource)) {
-					model.removeAll(resource, null, (RDFNode) null);
-				}
-				objectCache.remove(uri);
-			}
-
-			create( res );
-		
-	
-		} catch (Exception e) {
-			log.error("Exception during modifying of a graph ", e);
-		}
+		upsertAll(Collections.singletonList(res));
 	}
 	
 	/*
@@ -956,34 +1472,39 @@ public class Dualist {
 	 * 
 	 */
 	public void delete(GraphResource res) {
-		log.debug("Dualist.delete " + res.getUri());
+		Lock lock = enterWrite();
 		try {
+			log.debug("Dualist.delete " + res.getUri());
+			try {
 	
 
-			deleteFromSpatialIndex(res);
+				deleteFromSpatialIndex(res);
 			
-			Resource resource = null;
+				Resource resource = null;
 
-						// check if resource exists
-			resource = model.getResource(res.getUri());
+							// check if resource exists
+				resource = model.getResource(res.getUri());
 			
-			if (resource == null) { // if URI is not set, create a new URI with
-									// random hash
-				return;
-			}
+				if (resource == null) { // if URI is not set, create a new URI with
+										// random hash
+					return;
+				}
 
-			// remove statements where resource is subject
-			model.removeAll(resource, null, (RDFNode) null);
-			// remove statements where resource is object
-			model.removeAll(null, null, resource);
+				// remove statements where resource is subject
+				model.removeAll(resource, null, (RDFNode) null);
+				// remove statements where resource is object
+				model.removeAll(null, null, resource);
 
-			objectCache.remove(res.getUri());
+				objectCache.remove(res.getUri());
 
-			res.setUri(null);
-			res.setType(null);
+				res.setUri(null);
+				res.setType(null);
 			
-		} catch (Exception e) {
-			log.error("Exception during deleting of a graph ", e);
+			} catch (Exception e) {
+				log.error("Exception during deleting of a graph ", e);
+			}
+		} finally {
+			leave(lock);
 		}
 	}
 
@@ -1008,31 +1529,153 @@ public class Dualist {
 	 * 
 	 * 
 	 */
+	@SuppressWarnings("unchecked")
 	public <T extends GraphResource> List<T> getAll(Class resourceClass,
 			String graphType) {
-		List<GraphResource> resPojoList = new LinkedList<>();
+		return getAll(resourceClass, graphType, null);
+	}
+	
+	/*
+	 * Get all graph resources of a specific type, populated as specified by the fetch plan
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends GraphResource> List<T> getAll(Class<T> resourceClass,
+			String graphType, FetchPlan plan) {
+		Lock lock = enterRead();
 		try {
-			StmtIterator iter = model.listStatements(
-				new SimpleSelector(null, ResourceFactory.createProperty( model.expandPrefix(Constants.TYPE) ), ResourceFactory.createResource( model.expandPrefix(graphType) )));
-			while (iter.hasNext()) {
-				Statement stmt = iter.nextStatement(); // get next statement
-				Resource subject = stmt.getSubject(); // get the subject
-				// log.debug(soln.toString());
+			List<GraphResource> resPojoList = new LinkedList<>();
+			Worklist batch = batchWorklist(plan);
+			try {
+				StmtIterator iter = model.listStatements(
+					new SimpleSelector(null, ResourceFactory.createProperty( model.expandPrefix(Constants.TYPE) ), ResourceFactory.createResource( model.expandPrefix(graphType) )));
+				while (iter.hasNext()) {
+					Statement stmt = iter.nextStatement(); // get next statement
+					Resource subject = stmt.getSubject(); // get the subject
+					// log.debug(soln.toString());
 				
-				GraphResource resource;
-				if (objectCache.containsKey(subject.toString()) ) {
-					resource = objectCache.get(subject.toString());
-				} else {
-					// Populate POJO and direct subclasses
-					resource = populateFromGraph(subject);
-					this.putToCache( resource);
+					GraphResource resource;
+					resource = getCached(subject.toString());
+					if (resource == null) {
+						stats.miss(EntryPoint.GET_ALL);
+						// Populate POJO and direct subclasses
+						if( batch != null)
+							resource = populateInBatch(subject, null, null, batch);
+						else
+							resource = populateFromGraph(subject, null, plan);
+						if( plan == null)
+							this.putToCache( resource);
+					}
+					else if (resource.isReference()) {
+						stats.miss(EntryPoint.GET_ALL);
+						if( batch != null)
+							resource = populateInBatch(subject, resource, null, batch);
+						else
+							resource = resolve(resource, plan);
+					}
+					else
+						stats.hit(EntryPoint.GET_ALL);
+					if( plan != null)
+						fetch(resource, plan);
+					resPojoList.add(resource);
 				}
-				resPojoList.add(resource);
+				if( batch != null)
+					populateBatch(batch);
+			} catch (Exception e) {
+				log.error("Exception during querying of a graph, graphType " + graphType, e);
+			}
+			return (List<T>) resPojoList;
+		} finally {
+			leave(lock);
+		}
+	}
+	
+	/*
+	 * One page of the graph resources of a type, ordered by URI: up to limit resources following the URI after,
+	 * or from the first one if after is null. The next page is read with the getNext() token of the page.
+	 * 
+	 * The pages are read from a sorted index of the resources of the type, built on the first call. The writes
+	 * update the index for the resources whose types they change; it is built again after the class and property
+	 * definitions, or the types of more than the invalidation threshold of resources, have changed.
+	 */
+	public <T extends GraphResource> Page<T> getAll(Class<T> resourceClass, String graphType, String after, int limit) {
+		return getAll(resourceClass, graphType, after, limit, null);
+	}
+	
+	public <T extends GraphResource> Page<T> getAll(Class<T> resourceClass, String graphType, String after, int limit, FetchPlan plan) {
+		Lock lock = enterRead();
+		try {
+			if( limit <= 0)
+				throw new IllegalArgumentException("limit must be positive: " + limit);
+			List<String> uris = subjectIndex(model.expandPrefix(graphType)).page(after, limit + 1);
+			return page(uris, resourceClass, limit, plan);
+		} finally {
+			leave(lock);
+		}
+	}
+	
+	/*
+	 * Sorted index of the resources of the type, up to date with the graph. The indexes are updated with the
+	 * subjects whose types the listener has recorded as changed, and read again from the graph when it could
+	 * not record them.
+	 */
+	private SubjectIndex subjectIndex(String type) {
+		synchronized( subjectIndexes) {
+			long schema = cacheInvalidation.getSchemaGeneration();
+			if( subjectIndexes.isEmpty() || schema != subjectIndexSchema || cacheInvalidation.isTypesOverflow()) {
+				subjectIndexes.clear();
+				subjectIndexSchema = schema;
+				cacheInvalidation.trackTypes(typingPredicates());
+			}
+			else {
+				String[] changed = cacheInvalidation.drainTypeChanges();
+				if( changed.length > 0)
+					for( SubjectIndex index: subjectIndexes.values())
+						index.update(model, changed);
+			}
+			SubjectIndex index = subjectIndexes.get(type);
+			if( index == null) {
+				index = new SubjectIndex(model, model.getResource(type));
+				subjectIndexes.put(type, index);
+			}
+			return index;
+		}
+	}
+	
+	/*
+	 * Properties whose subjects or objects the graph infers types for: the ones having a domain or a range, and
+	 * their sub-properties
+	 */
+	private Set<Node> typingPredicates() {
+		Set<Node> predicates = new HashSet<>();
+		for( Property typing: new Property[] { RDFS.domain, RDFS.range }) {
+			StmtIterator iter = model.listStatements(null, typing, (RDFNode) null);
+			try {
+				while( iter.hasNext()) {
+					Resource property = iter.next().getSubject();
+					predicates.add(property.asNode());
+					model.listSubjectsWithProperty(RDFS.subPropertyOf, property)
+							.forEachRemaining(sub -> predicates.add(sub.asNode()));
+				}
+			} finally {
+				iter.close();
 			}
-		} catch (Exception e) {
-			log.error("Exception during querying of a graph, graphType " + graphType, e);
 		}
-		return (List<T>) resPojoList;
+		return predicates;
+	}
+	
+	/*
+	 * Page of the first limit URIs, the one more URI tells if there is a next page
+	 */
+	private <T extends GraphResource> Page<T> page(List<String> uris, Class<T> resourceClass, int limit, FetchPlan plan) {
+		boolean more = uris.size() > limit;
+		if( more)
+			uris = uris.subList(0, limit);
+		List<URI> refs = new ArrayList<>(uris.size());
+		for( String uri: uris)
+			refs.add(new URI(uri));
+		List<T> items = instantiate(refs, resourceClass, plan);
+		items.removeIf(item -> item == null);
+		return new Page<T>(items, more ? uris.get(uris.size() - 1) : null);
 	}
 	
 	
@@ -1042,7 +1685,18 @@ public class Dualist {
 	 */
 	public List<URI> queryRelative(String resUri, String propertyPath) {
 		if(resUri.contains("http://")) resUri = "<" + resUri + ">";
-		return query( "SELECT * where { " + resUri + " " + propertyPath + " ?result. }" );   
+		try {
+			// one parsed query per property path, the resource is bound to it
+			Query query = compileQuery( "SELECT * where { ?resource " + propertyPath + " ?result. }" );
+			List<URI> uris = new LinkedList<>();
+			for( String uri: resultUris("RELATIVE " + resUri + " " + propertyPath, QueryCache.bind(query, "resource", queryCache.parseNode(resUri)))) {
+				uris.add(new URI(uri));
+			}
+			return uris;
+		} catch (Exception e) {
+			log.error("Exception during querying of a graph ", e);
+		}
+		return new LinkedList<>();
 	}
 	
 	/* Perform a query with relative property path from originating resource 
@@ -1068,29 +1722,48 @@ public class Dualist {
 		
 		List<URI> resPojoList = new LinkedList<>();
 		try {
-
-			String sparqlQueryMapped = this.getQueryPrefixMapping() + sparqlQuery;
-
-			Query query = QueryFactory.create(sparqlQueryMapped);
+			for( String uri: resultUris(sparqlQuery, compileQuery(sparqlQuery))) {
+				resPojoList.add(new URI(uri));
+			}
+		} catch (Exception e) {
+			log.error("Exception during querying of a graph ", e);
+		}
+		return resPojoList;
+	}
+	
+	/*
+	 * URIs of the ?result variable of the query. Served from the query result cache, if enabled, until the graph changes.
+	 * 
+	 * @key text identifying the query and its bindings in the result cache
+	 */
+	private List<String> resultUris(String key, Query query) {
+		Lock lock = enterRead();
+		try {
+			QueryResultCache resultCache = this.queryResultCache;
+			long generation = 0;
+			if( resultCache != null) {
+				generation = cacheInvalidation.getGeneration();
+				List<String> uris = resultCache.get(key, generation);
+				if( uris != null)
+					return uris;
+			}
+			List<String> uris = new ArrayList<>();
 			try (QueryExecution qexec = QueryExecutionFactory.create(query,
 					model)) {
 				ResultSet results = qexec.execSelect();
 
 				for (; results.hasNext();) {
 					QuerySolution soln = results.nextSolution();
-					// log.debug(soln.toString());
-					
 					Resource s = soln.getResource("result");
-				
-					resPojoList.add(new URI(s.toString()));
-
+					uris.add(s.toString());
 				}
 			}
-		} catch (Exception e) {
-			log.error("Exception during querying of a graph ", e);
+			if( resultCache != null)
+				resultCache.put(key, generation, uris);
+			return uris;
+		} finally {
+			leave(lock);
 		}
-
-		return resPojoList;
 	}
 	
 	
@@ -1100,46 +1773,247 @@ public class Dualist {
 	 * NOTE: resource variable containing resource URIs is ?result
 	 * 
 	 */
+	@SuppressWarnings("unchecked")
 	public <T extends GraphResource> List<T> query(Class resourceClass, String sparqlQuery) {
-		List<GraphResource> resPojoList = new LinkedList<>();
+		return query(resourceClass, sparqlQuery, null);
+	}
+	
+	/*
+	 * Query with the result resources populated as specified by the fetch plan
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends GraphResource> List<T> query(Class<T> resourceClass, String sparqlQuery, FetchPlan plan) {
+		Lock lock = enterRead();
+		try {
+			List<GraphResource> resPojoList = new LinkedList<>();
+			Worklist batch = batchWorklist(plan);
+			try {
+				if(!sparqlQuery.contains("result")) {
+					log.error("Sparql query does not contain 'result' variable! Result variable must contain URI(s) of the resources to be returned from the query");
+					return null;
+				}
+		
+				for( String uri: resultUris(sparqlQuery, compileQuery(sparqlQuery))) {
+					GraphResource resource;
+					resource = getCached(uri);
+					if (resource != null && resource.isReference()) {
+						stats.miss(EntryPoint.QUERY);
+						if( batch != null)
+							resource = populateInBatch(model.getResource(uri), resource, null, batch);
+						else
+							resource = resolve(resource, plan);
+					} else if (resource != null) {
+						stats.hit(EntryPoint.QUERY);
+						log.debug("cache hit (query) " + uri);
+					} else {
+						stats.miss(EntryPoint.QUERY);
+						log.debug("cache miss (query) " + uri);
+				
+						// Populate POJO and direct subclasses
+						if( batch != null)
+							resource = populateInBatch(model.getResource(uri), null, null, batch);
+						else
+							resource = populateFromGraph(model.getResource(uri), null, plan);
+						if( plan == null)
+							putToCache(resource);
+					}
+					if( plan != null)
+						fetch(resource, plan);
+					resPojoList.add(resource);
+				}
+				if( batch != null)
+					populateBatch(batch);
+			} catch (Exception e) {
+				log.error("Exception during querying of a graph ", e);
+			}
+				
+			return (List<T>) resPojoList;
+		} finally {
+			leave(lock);
+		}
+	}
+	
+	/*
+	 * One page of the distinct ?result resources of the query, ordered by URI: up to limit resources following the
+	 * URI after, or from the first one if after is null. The next page is read with the getNext() token of the page.
+	 * The query is a subquery of the page query, so its own ORDER BY does not apply to the pages.
+	 * 
+	 * WARNING! Every page runs the whole query again and sorts its distinct results by URI before skipping to the
+	 * URI after, so reading all the pages of a large result costs the query and the sort once per page. Prefer
+	 * the paged getAll, which reads an index of the type, or a query selective enough to be read at once.
+	 */
+	public <T extends GraphResource> Page<T> query(Class<T> resourceClass, String sparqlQuery, String after, int limit) {
+		return query(resourceClass, sparqlQuery, after, limit, null);
+	}
+	
+	public <T extends GraphResource> Page<T> query(Class<T> resourceClass, String sparqlQuery, String after, int limit, FetchPlan plan) {
+		Lock lock = enterRead();
 		try {
+			if( limit <= 0)
+				throw new IllegalArgumentException("limit must be positive: " + limit);
 			if(!sparqlQuery.contains("result")) {
 				log.error("Sparql query does not contain 'result' variable! Result variable must contain URI(s) of the resources to be returned from the query");
 				return null;
 			}
-		
-				String sparqlQueryMapped = this.getQueryPrefixMapping() + sparqlQuery;
-
-				Query query = QueryFactory.create(sparqlQueryMapped);
-				try (QueryExecution qexec = QueryExecutionFactory.create(query,
+			List<String> uris = new ArrayList<>();
+			try {
+				Query query = QueryCache.page(compileQuery(sparqlQuery), "result", after, limit + 1);
+				uris = resultUris("PAGE " + after + " " + limit + " " + sparqlQuery, query);
+			} catch (Exception e) {
+				log.error("Exception during querying of a graph ", e);
+			}
+			return page(uris, resourceClass, limit, plan);
+		} finally {
+			leave(lock);
+		}
+	}
+	
+	/*
+	 * Rows of a SELECT query as DTOs, with the values of the variables set to the fields of the same name. The
+	 * resources are not populated; resource values are mapped to String or URI fields by URI. See ProjectionMapping
+	 * for the supported DTO classes.
+	 * 
+	 * List<PersonRow> rows = graph.select("SELECT ?name ?lat ?lon WHERE { ?p a society:Person; society:name ?name ... }", PersonRow.class);
+	 */
+	public <R> List<R> select(String sparqlQuery, Class<R> recordType) {
+		Lock lock = enterRead();
+		try {
+			List<R> rows = new ArrayList<>();
+			try {
+				ProjectionMapping<R> mapping = getProjectionMapping(recordType);
+				try (QueryExecution qexec = QueryExecutionFactory.create(compileQuery(sparqlQuery),
 						model)) {
 					ResultSet results = qexec.execSelect();
-
-					for (; results.hasNext();) {
-						QuerySolution soln = results.nextSolution();
-						Resource s = soln.getResource("result");
-						
-						GraphResource resource;
-						if (objectCache.containsKey(s.toString()) ) {
-							resource = objectCache.get(s.toString());
-							log.debug("cache hit (query) " + s.toString());
-						} else {
-							log.debug("cache miss (query) " + s.toString());
-						
-							// Populate POJO and direct subclasses
-							resource = populateFromGraph(s);
-							putToCache(resource);
-						}
-				resPojoList.add(resource);
+					while( results.hasNext()) {
+						rows.add(mapping.map(results.nextSolution()));
+					}
+				}
+			} catch (Exception e) {
+				log.error("Exception during querying of a graph ", e);
 			}
-		} catch (Exception e) {
-			log.error("Exception during querying of a graph ", e);
+			return rows;
+		} finally {
+			leave(lock);
 		}
-		} catch (Exception e) {
-			log.error("Exception during querying of a graph ", e);
+	}
+	
+	/*
+	 * All graph resources of a type as a stream, populated one by one as the stream is consumed. The stream reads
+	 * the graph while it is open, so the graph must not be modified before it is closed; in the concurrent mode
+	 * the writes of the other threads wait until then:
+	 * 
+	 * try( Stream<Person> persons = graph.streamAll(Person.class, "society:Person")) { ... }
+	 */
+	public <T extends GraphResource> Stream<T> streamAll(Class<T> resourceClass, String graphType) {
+		return streamAll(resourceClass, graphType, null);
+	}
+	
+	public <T extends GraphResource> Stream<T> streamAll(Class<T> resourceClass, String graphType, FetchPlan plan) {
+		Lock lock = enterStream();
+		try {
+			StmtIterator iter = model.listStatements(
+					new SimpleSelector(null, RDF.type, model.getResource( model.expandPrefix(graphType) )));
+			Iterator<String> uris = iter.filterKeep(stmt -> stmt.getSubject().isURIResource()).mapWith(stmt -> stmt.getSubject().getURI());
+			return this.<T>stream(uris, EntryPoint.GET_ALL, plan).onClose(() -> {
+				iter.close();
+				leaveStream(lock);
+			});
+		} catch (RuntimeException e) {
+			leaveStream(lock);
+			throw e;
+		}
+	}
+	
+	/*
+	 * The ?result resources of the query as a stream, populated one by one as the stream is consumed. The query is
+	 * executed while the stream is open, and its results are not put to the query result cache.
+	 */
+	public <T extends GraphResource> Stream<T> streamQuery(Class<T> resourceClass, String sparqlQuery) {
+		return streamQuery(resourceClass, sparqlQuery, null);
+	}
+	
+	public <T extends GraphResource> Stream<T> streamQuery(Class<T> resourceClass, String sparqlQuery, FetchPlan plan) {
+		if(!sparqlQuery.contains("result")) {
+			log.error("Sparql query does not contain 'result' variable! Result variable must contain URI(s) of the resources to be returned from the query");
+			return Stream.empty();
+		}
+		Lock lock = enterStream();
+		QueryExecution qexec = null;
+		try {
+			qexec = QueryExecutionFactory.create(compileQuery(sparqlQuery), model);
+			ResultSet results = qexec.execSelect();
+			Iterator<String> uris = new Iterator<String>() {
+				public boolean hasNext() {
+					return results.hasNext();
+				}
+				public String next() {
+					RDFNode result = results.nextSolution().get("result");
+					return result != null && result.isURIResource() ? result.asResource().getURI() : null;
+				}
+			};
+			QueryExecution closed = qexec;
+			return this.<T>stream(uris, EntryPoint.QUERY, plan).onClose(() -> {
+				closed.close();
+				leaveStream(lock);
+			});
+		} catch (RuntimeException e) {
+			if( qexec != null)
+				qexec.close();
+			leaveStream(lock);
+			throw e;
+		}
+	}
+	
+	/*
+	 * In the concurrent mode a stream holds the read lock of the model until it is closed, so that the graph is not
+	 * written while the stream reads it. The lock is not counted as a read of the thread: each resource is
+	 * populated by a read of its own, and published when it has been populated, see streamed. Returns the lock to
+	 * leave when the stream is closed, null if not locked.
+	 */
+	private Lock enterStream() {
+		if( !concurrent)
+			return null;
+		Lock lock = model.getLock();
+		lock.enterCriticalSection(Lock.READ);
+		return lock;
+	}
+	
+	private void leaveStream(Lock lock) {
+		if( lock != null)
+			lock.leaveCriticalSection();
+	}
+	
+	/*
+	 * Stream of the resources of the URIs, populated when they are read from the stream
+	 */
+	@SuppressWarnings("unchecked")
+	private <T extends GraphResource> Stream<T> stream(Iterator<String> uris, EntryPoint entryPoint, FetchPlan plan) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(uris, Spliterator.ORDERED), false)
+				.filter(uri -> uri != null)
+				.map(uri -> (T) streamed(uri, entryPoint, plan))
+				.filter(resource -> resource != null);
+	}
+	
+	private GraphResource streamed(String uri, EntryPoint entryPoint, FetchPlan plan) {
+		Lock lock = enterRead();
+		try {
+			GraphResource resource = getCached(uri);
+			if (resource == null) {
+				stats.miss(entryPoint);
+				resource = populateFromGraph(model.getResource(uri), null, plan);
+			}
+			else if (resource.isReference()) {
+				stats.miss(entryPoint);
+				resource = resolve(resource, plan);
+			}
+			else
+				stats.hit(entryPoint);
+			if( resource != null && plan != null)
+				fetch(resource, plan);
+			return resource;
+		} finally {
+			leave(lock);
 		}
-				
-		return (List<T>) resPojoList;
 	}
 	
 	
@@ -1216,39 +2090,34 @@ public class Dualist {
  	 */
 	public List queryByAttributeValue(Class resourceClass,
 			String property, Object value) {
-		List resPojoList = new LinkedList<>();
+		List<Object> resPojoList = new LinkedList<>();
 		try {
+			// strings and URIs are bound as nodes, so quotes and backslashes in them need no escaping
+			Node node;
 			if( value instanceof String )
-				value = "\"" + value + "\"";
+				node = NodeFactory.createLiteral((String) value);
+			else if( value instanceof GraphResource )
+				node = NodeFactory.createURI(((GraphResource) value).getUri());
+			else if( value instanceof URI && value.toString().contains("://") && !value.toString().startsWith("<"))
+				node = NodeFactory.createURI(value.toString());
+			else
+				node = queryCache.parseNode(value.toString());
 
 			if( property.contains( "http://") && !property.startsWith("<")) { // not elegant
 				property = "<" + property + ">";
 			}
-			String queryString = this.getQueryPrefixMapping() + " SELECT * where {?result "
-					+ property + " " + value.toString() + ".}";
-
-
-			long startTime = new Date().getTime();
-
-			Query query = QueryFactory.create(queryString);
-			try (QueryExecution qexec = QueryExecutionFactory.create(query,
-					model)) {
-				ResultSet results = qexec.execSelect();
 
-				for (; results.hasNext();) {
-					QuerySolution sol = results.nextSolution();
-					// log.debug(soln.toString());
-					Resource s = sol.getResource("result");
-
-					if( resourceClass.equals(URI.class)) {
-						URI uri = new URI( s.toString());
-						resPojoList.add(uri);
-					}
-					else {
-						GraphResource resource = this.get(s.toString(), resourceClass);
-						
-						resPojoList.add(resource);
-					}
+			// one parsed query per property, the value is bound to it
+			Query query = compileQuery( "SELECT * where {?result " + property + " ?value .}");
+			query = QueryCache.bind(query, "value", node);
+			for( String uri: resultUris("ATTRIBUTE " + property + " " + NodeFmtLib.str(node), query)) {
+				if( resourceClass.equals(URI.class)) {
+					resPojoList.add(new URI(uri));
+				}
+				else {
+					GraphResource resource = this.get(uri, resourceClass);
+					
+					resPojoList.add(resource);
 				}
 			}
 		} catch (Exception e) {
@@ -1277,66 +2146,193 @@ public class Dualist {
 	/* 
 	 * Get a POJO by URI
 	 */
+	@SuppressWarnings("unchecked")
 	public <T extends GraphResource> T get(URI ref, Class resourceClass, boolean populateAttributeList) {
-		
-		GraphResource resource = null;
+		return (T) getResource(ref, EntryPoint.GET, null);
+	}
+	
+	/* 
+	 * Get a POJO by URI, populated as specified by the fetch plan
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends GraphResource> T get(URI ref, Class<T> resourceClass, FetchPlan plan) {
+		return (T) getResource(ref, EntryPoint.GET, plan);
+	}
+	
+	public <T extends GraphResource> T get(String uri, Class<T> resourceClass, FetchPlan plan) {
+		return get(new URI(uri), resourceClass, plan);
+	}
+	
+	/*
+	 * Get a POJO by URI, cache hits and misses counted for the entry point
+	 */
+	private GraphResource getResource(URI ref, EntryPoint entryPoint, FetchPlan plan) {
+		Lock lock = enterRead();
 		try {
-			if( !this.containsResource(ref.toString()) ) {
-				log.debug( "Resource not found in graph" );
-				return null;
-			}
+		
+			GraphResource resource = null;
+			try {
+				if( !this.containsResource(ref.toString()) ) {
+					log.debug( "Resource not found in graph" );
+					return null;
+				}
 			
-			Resource s = model.getResource(model.expandPrefix(ref.uri));
+				Resource s = model.getResource(model.expandPrefix(ref.uri));
 	
-			boolean populateNew = true;
-			if (objectCache.containsKey(s.toString()) ) {
-				resource = objectCache.get(s.toString());
-			}
-			else {
-				log.debug("cache miss: " + ref.toString());
+				boolean populateNew = true;
+				resource = getCached(s.toString());
+				if (resource == null) {
+					stats.miss(entryPoint);
+					log.debug("cache miss: " + ref.toString());
 
-				resource = populateFromGraph( s);
+					resource = populateFromGraph( s, null, plan);
 
-			}
+				}
+				else if( resource.isReference()) {
+					stats.miss(entryPoint);
+					resource = resolve(resource, plan);
+				}
+				else
+					stats.hit(entryPoint);
+				if( plan != null)
+					fetch(resource, plan);
 	
 
-		return (T) resource;
+			return resource;
+			}
+		catch( Exception e) {
+			e.printStackTrace();
+		}
+			return null;
+		} finally {
+			leave(lock);
 		}
-	catch( Exception e) {
-		e.printStackTrace();
-	}
-		return null;
 	}
 	/*
 	 * Instantiates a list of URIs to list of classes. Uses defaultClass to resolve resource's class if not found in cache.
 	 * 
 	 */
+	@SuppressWarnings("unchecked")
 	public <T extends GraphResource> List<T> instantiate(List<URI> uris, Class resourceClass) {
-		List<GraphResource> resPojoList = new LinkedList<>();
-		for( URI uri: uris) {
-			GraphResource res = get(uri, resourceClass, false);
-		
-			resPojoList.add(res);
-		}
-		
-		return (List<T>) resPojoList;
+		return instantiate(uris, resourceClass, null);
+	}
+	
+	/*
+	 * Instantiates a list of URIs, populated as specified by the fetch plan
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends GraphResource> List<T> instantiate(List<URI> uris, Class<T> resourceClass, FetchPlan plan) {
+		return (List<T>) instantiateAll(uris, plan);
 	}
 	
 	/*
 	 * Instantiates a list of URIs to list of classes. Uses defaultClass to resolve resource's class if not found in cache.
 	 * 
 	 */
+	@SuppressWarnings("unchecked")
 	public <T extends GraphResource> List<T> instantiate(List<URI> uris) {
-		List<GraphResource> resPojoList = new LinkedList<>();
-		for( URI uri: uris) {
-			GraphResource res = objectCache.get(uri.toString());
-			if( res == null) {
-				res = get(uri, null);
+		return (List<T>) instantiateAll(uris, null);
+	}
+	
+	/*
+	 * Instantiates the URIs as a batch: the cache is checked once per distinct URI, and the statements of all
+	 * the resources not in the cache are read with one query before populating them. Returns the resources in
+	 * the order of the URIs, null for the URIs not found in the graph.
+	 */
+	private List<GraphResource> instantiateAll(List<URI> uris, FetchPlan plan) {
+		Lock lock = enterRead();
+		try {
+			List<String> expanded = new ArrayList<>(uris.size());
+			Map<String, GraphResource> resources = new HashMap<>();
+			Set<String> missing = new LinkedHashSet<>();
+			for( URI uri: uris) {
+				String u = model.expandPrefix(uri.getUri());
+				expanded.add(u);
+				if( resources.containsKey(u) || missing.contains(u))
+					continue;
+				GraphResource res = getCached(u);
+				if( res == null || res.isReference()) {
+					stats.miss(EntryPoint.INSTANTIATE);
+					missing.add(u);
+				}
+				else {
+					stats.hit(EntryPoint.INSTANTIATE);
+					resources.put(u, res);
+				}
+			}
+		
+			if( !missing.isEmpty()) {
+				Worklist batch = batchWorklist(plan);
+				Map<String, List<Statement>> statements = subjectStatements(missing);
+				for( String u: missing) {
+					try {
+						Resource s = model.getResource(u);
+						List<Statement> st = statements.get(u);
+						if( st == null) {
+							if( !model.containsResource(s)) {
+								log.debug( "Resource not found in graph: " + u);
+								continue;
+							}
+							st = Collections.emptyList();
+						}
+						// may have been populated as a reference of an earlier resource of the batch
+						GraphResource res = getCached(u);
+						if( batch != null && (res == null || res.isReference()))
+							res = populateInBatch(s, res, st, batch);
+						else if( res == null)
+							res = populateFromGraph(s, null, plan, st);
+						else if( res.isReference() && !populating.get().containsKey(u))
+							res = populateFromGraph(s, res, plan, st);
+						resources.put(u, res);
+					} catch (Exception e) {
+						log.error("Exception during instantiating " + u, e);
+					}
+				}
+				if( batch != null)
+					populateBatch(batch);
+			}
+			if( plan != null) {
+				for( GraphResource res: resources.values()) {
+					if( res != null)
+						fetch(res, plan);
+				}
 			}
-			resPojoList.add(res);
-		}
 		
-		return (List<T>) resPojoList;
+			List<GraphResource> resPojoList = new ArrayList<>(expanded.size());
+			for( String u: expanded) {
+				resPojoList.add(resources.get(u));
+			}
+			return resPojoList;
+		} finally {
+			leave(lock);
+		}
+	}
+	
+	/*
+	 * Statements of the subjects, grouped by subject URI. Subjects without statements are not included.
+	 */
+	private Map<String, List<Statement>> subjectStatements(Collection<String> subjects) {
+		Map<String, List<Statement>> statements = new HashMap<>();
+		List<Node> nodes = new ArrayList<>(BATCH_SIZE);
+		Iterator<String> it = subjects.iterator();
+		while( it.hasNext()) {
+			nodes.add(NodeFactory.createURI(it.next()));
+			if( nodes.size() < BATCH_SIZE && it.hasNext())
+				continue;
+			Query query = QueryCache.values(compileQuery(SUBJECT_STATEMENTS), "resource", nodes);
+			try (QueryExecution qexec = QueryExecutionFactory.create(query,
+					model)) {
+				ResultSet results = qexec.execSelect();
+				while( results.hasNext()) {
+					QuerySolution soln = results.nextSolution();
+					Resource subject = soln.getResource("resource");
+					Statement stmt = model.createStatement(subject, model.getProperty(soln.getResource("p").getURI()), soln.get("o"));
+					statements.computeIfAbsent(subject.getURI(), k -> new ArrayList<>()).add(stmt);
+				}
+			}
+			nodes.clear();
+		}
+		return statements;
 	}
 	
 	
@@ -1367,66 +2363,41 @@ public class Dualist {
 	
 	
 	public boolean isResourceTypeOf( URI resource, URI type) {
-		Resource r = model.getResource(model.expandPrefix(resource.uri));
-		Resource t = model.getResource(model.expandPrefix(type.uri));
-		return model.contains(r, RDF.type, t);
+		Lock lock = enterRead();
+		try {
+			Resource r = model.getResource(model.expandPrefix(resource.uri));
+			Resource t = model.getResource(model.expandPrefix(type.uri));
+			return model.contains(r, RDF.type, t);
+		} finally {
+			leave(lock);
+		}
 	}
 
 	public boolean isSubClassOf( String child, String parent ) {
-		OntClass o = ((OntModel)model).getOntClass(model.expandPrefix(child));
-		
-		if(o== null )
+		if( child == null || parent == null)
 			return false;
-		Iterator<OntClass> it = o.listSuperClasses();
-		while(it.hasNext()) {
-	         OntClass par = it.next();
-			if( par.getURI().equals(model.expandPrefix(parent))) {
-				return true;
-			}
-		}
-		return false;
+		return getTypeHierarchy().isSubClassOf(model.expandPrefix(child), model.expandPrefix(parent));
 	}
 		
+	/*
+	 * The most specific superclass of the class in the base namespace
+	 */
 	public String getSuperClass(String child) {
 		if( child == null)
 			return null;
-	OntClass o = ((OntModel)model).getOntClass(model.expandPrefix(child));
-	
-	if(o== null )
-		return null;
-	Iterator<OntClass> it = o.listSuperClasses();
-
-	while(it.hasNext()) {
-         OntClass par = it.next();
-		if( par.getURI().startsWith(getBaseNs())) {
-			return par.getURI();
-		}
+		return getTypeHierarchy().getSuperClass(model.expandPrefix(child), getBaseNs());
 	}
-	return null;
-}
 	
 	
 	
 	public String getResourceType( GraphResource resource) {
-		for( String t:resource.getTypes()) {
-			OntClass o = ((OntModel)model).getOntClass(t);
-			if( !o.listSubClasses().hasNext()) {
-				return t;
-			}
-		}
-		return null;
-		
+		if( resource.getTypes() == null)
+			return null;
+		return getTypeHierarchy().getLeafType(Arrays.asList(resource.getTypes()));
 	}
 	
 	public String getResourceType( List<String> types) {
-		for( String t:types) {
-			OntClass o = ((OntModel)model).getOntClass(t);
-			if( !o.listSubClasses().hasNext()) {
-				return t;
-			}
-		}
-		return null;
-		
+		return getTypeHierarchy().getLeafType(types);
 	}
 	
 	
@@ -1439,13 +2410,6 @@ public class Dualist {
 			resolveResourceClass(c.toString());
 		}
 		
-		for( URI c:allClasses) {
-			OntClass o = ((OntModel)model).getOntClass(c.toString());
-			if( !o.listSubClasses().hasNext()) {
-				level0Classes.add(c.toString().substring(c.toString().indexOf("#")+1));
-			}
-				
-		}
 /*		for( URI c:level0Classes) {
 			OntClass o = ((OntModel)model).getOntClass(c.toString());
 			Iterator<OntClass> is = o.listSuperClasses(false);
@@ -1539,9 +2503,8 @@ public class Dualist {
 								pojoClass=pojoClass;
 							}
 							GraphResource instance;
-							if (objectCache.containsKey(s.toString())) {
-								instance =objectCache.get(s.toString());
-							} else {
+							instance = getCached(s.toString());
+							if (instance == null) {
 								instance = (GraphResource) Class
 										.forName(pojoClass).newInstance();
 								instance.setUri(s.toString());
@@ -1598,8 +2561,109 @@ public class Dualist {
 	 * 
 	 */
 	protected GraphResource populateFromGraph(Resource resource) {
+		return populateFromGraph(resource, null, null);
+	}
+	
+	private GraphResource populateFromGraph(Resource resource, GraphResource target, FetchPlan plan) {
+		return populateFromGraph(resource, target, plan, null);
+	}
+	
+	/*
+	 * Populates the given reference object, or a new object if it is null. With a fetch plan, the referenced
+	 * resources are left as references, to be resolved by fetch(). The statements of the resource are read
+	 * from the graph, unless given.
+	 */
+	private GraphResource populateFromGraph(Resource resource, GraphResource target, FetchPlan plan, List<Statement> statements) {
+		stats.populateStarted();
+		try {
+			if( lazyLoading || plan != null)
+				return populate(resource, target, plan, statements, null);
+			Worklist worklist = new Worklist(populationDepth);
+			GraphResource root = populate(resource, target, null, statements, worklist);
+			populateAll(worklist);
+			return root;
+		} finally {
+			stats.populateFinished();
+		}
+	}
+	
+	/*
+	 * Populates the references of the worklist, and the references they add to it, breadth-first.
+	 * Replaces recursion, so the length of reference chains is not limited by the stack. The query
+	 * properties of the populated resources are populated in batches, whenever the queue runs empty.
+	 */
+	private void populateAll(Worklist worklist) {
+		while( true) {
+			GraphResource next;
+			while( (next = worklist.poll()) != null) {
+				if( !next.isReference() || populating.get().containsKey(next.getUri()))
+					continue;
+				stats.populateStarted();
+				try {
+					populate(model.getResource(next.getUri()), next, null, null, worklist);
+				} finally {
+					stats.populateFinished();
+				}
+			}
+			List<GraphResource> queries = worklist.drainQueryProperties();
+			if( queries.isEmpty())
+				break;
+			populateQueryProperties(queries, worklist);
+		}
+	}
+	
+	/*
+	 * Worklist shared by the resources of a result set, so that their references and query properties are
+	 * populated together by populateBatch. Null if the resources are not populated from a worklist.
+	 */
+	private Worklist batchWorklist(FetchPlan plan) {
+		return plan != null || lazyLoading ? null : new Worklist(populationDepth);
+	}
+	
+	/*
+	 * Populates a resource of a result set, or the given reference object, leaving its references and
+	 * query properties to the batch
+	 */
+	private GraphResource populateInBatch(Resource resource, GraphResource target, List<Statement> statements, Worklist batch) {
+		stats.populateStarted();
+		try {
+			return populate(resource, target, null, statements, batch);
+		} finally {
+			stats.populateFinished();
+		}
+	}
+	
+	private void populateBatch(Worklist batch) {
+		stats.populateStarted();
+		try {
+			populateAll(batch);
+		} finally {
+			stats.populateFinished();
+		}
+	}
+	
+	/*
+	 * Populates a resource. The referenced resources are added to the worklist as references, or left as
+	 * references without a worklist.
+	 */
+	private GraphResource populate(Resource resource, GraphResource target, FetchPlan plan, List<Statement> statements, Worklist worklist) {
+		// in a concurrent read the new objects are private to the thread until the read ends, see publish; a
+		// reference object shared with the other threads is claimed, and stays a reference until then
+		boolean deferred = isPrivate();
+		boolean shared = deferred && target != null && unpublished.get().get(target.getUri()) != target;
+		if( shared) {
+			if( claimed.get().containsKey(target))
+				return target;
+			if( !claim(target)) {
+				if( !target.isReference())
+					return target;
+				// another thread is resolving it, and this one cannot wait: populate a private object instead
+				target = null;
+				shared = false;
+			}
+		}
 
-		StmtIterator iter = model.listStatements(
+		Iterator<Statement> iter = statements != null ? statements.iterator() : model.listStatements(
 				new SimpleSelector(resource, null, (RDFNode) null));
 		
 		List<Property> properties = new LinkedList<>();
@@ -1608,14 +2672,14 @@ public class Dualist {
 		
 		// get all triples
 		while (iter.hasNext()) {
-			Statement stmt = iter.nextStatement(); // get next statement
+			Statement stmt = iter.next(); // get next statement
 			Resource subject = stmt.getSubject(); // get the subject
 			Property predicate = stmt.getPredicate(); // get the predicate
 			RDFNode object = stmt.getObject(); // get the object
 
 			// if a rdf:type triple, add to types
-			if (predicate.toString().endsWith("ns#type")) {
-				if( !object.toString().contains("owl")  && !object.toString().contains("rdfs") && !object.toString().contains("rdf-schema") && !object.toString().contains("wgs84_pos") && !object.toString().contains("geosparql") && !object.toString().contains("Class") && ( object.toString().contains(":") || object.toString().contains("/")  )) {
+			if (RDF.type.equals(predicate)) {
+				if( isResourceType(object)) {
 					types.add( object.toString());
 				}
 			}
@@ -1625,213 +2689,639 @@ public class Dualist {
 			}
 		}
 		
-		String resourceType = null;
+		String resourceType = selectResourceType(types);
 		
-		if( types.size() == 0 ) {
-			
-		}
-		else if( types.size() == 1 ) 
-			resourceType = types.get(0);
-		else {
-			for( String type:types) {
-				if( level0Classes.contains(type.toString().substring(type.toString().indexOf("#")+1)))
-					resourceType = type;
-			}
-			if( resourceType == null) 
-				resourceType = this.getResourceType(types);
-		}
-		
-		Class resourceClass = this.resolveResourceClass(resourceType);	
+		ClassMapping mapping;
 		GraphResource pojoResource;
 		try {
-			pojoResource = (GraphResource) Class
-						.forName(resourceClass.getName()).newInstance();
+			if( target != null) {
+				// resolve a reference object in place
+				mapping = getClassMapping(target.getClass());
+				pojoResource = target;
+			}
+			else {
+				mapping = getClassMapping(this.resolveResourceClass(resourceType));
+				pojoResource = (GraphResource) mapping.newInstance();
+			}
 
 		pojoResource.setGraph(this);
 		pojoResource.setUri (resource.getURI());
 		pojoResource.setType(resourceType);
 		pojoResource.setTypes((String[])(types.toArray(new String[types.size()])));
 	//	pojoResource.setPopulateProperties(populateAttributeList);
-		putToCache( pojoResource);
-			// Populate POJO and direct subclasses	
+		// a claimed reference object is in the cache already, or held by the objects referring to it
+		if( !shared)
+			putToCache( pojoResource);
+		populating.get().put(pojoResource.getUri(), pojoResource);
+		try {
+			// Populate POJO and direct subclasses
 			
 			
-		int i=0;	
-		for(Property predicate: properties) {
-			RDFNode object = objects.get(i);
-			i++;
-			if (object instanceof Resource) {
-				// object is a resource
-				if (predicate.toString().contains("subClassOf"))
-					continue;
+			Iterator<RDFNode> objectIter = objects.iterator();
+			for(Property predicate: properties) {
+				RDFNode object = objectIter.next();
+				if (object instanceof Resource) {
+					// object is a resource
+					if (predicate.toString().contains("subClassOf"))
+						continue;
 
-				instantiateResourceProperty(pojoResource, predicate, object);
+					FieldBinding[] candidates = mapping.getResourceBindings(predicate.getURI());
+					if( candidates.length > 0)
+						instantiateResourceProperty(pojoResource, candidates, predicate, object, worklist);
 				
 			
-			} else {
-				// object is a literal
-
-				setPropertyValue(pojoResource, predicate, object);
-				}
-		}
-
-		if( populateSparqlProperties )
-			populateQueryProperties(pojoResource);
-		pojoResource.setReference(false);
+				} else {
+					// object is a literal
 
-//		this.putToCache(pojoResource);
+					FieldBinding[] candidates = mapping.getLiteralBindings(predicate.getURI());
+					if( candidates.length > 0)
+						setPropertyValue(pojoResource, candidates, predicate, object);
+					}
+			}
 
-		populateQueryProperties(pojoResource);
+			if( !shared)
+				pojoResource.setReference(false);
+			if( dirtyTracking)
+				snapshot(pojoResource);
+			if( plan != null ? plan.isQueries() : populateSparqlProperties) {
+				if( worklist != null)
+					worklist.addQueryProperties(pojoResource, mapping);
+				else if( mapping.getQueryBindings().length > 0)
+					populateQueryProperties(Collections.singletonList(pojoResource), null);
+			}
 
 					
-		updateSpatialIndex( pojoResource);
+			// the private objects are indexed when published
+			if( !deferred || shared)
+				updateSpatialIndex( pojoResource);
 	
-		pojoResource.setGraph(this);
-		
+			pojoResource.setGraph(this);
+		} finally {
+			populating.get().remove(pojoResource.getUri());
+		}
+		if( plan != null) {
+			// shaped by the plan, shared with the other calls only until fetch() has resolved the plan
+			planned.get().add(pojoResource);
+		}
 		return pojoResource;
 	//	pojoResource.setDirectType(this.getType(pojoResource.getUriObj()));
-		} catch (InstantiationException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (IllegalAccessException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (ClassNotFoundException e) {
+		} catch (ReflectiveOperationException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
 		return null;
 	}
 
-	private void populateQueryProperties(GraphResource res) {
-		// TODO Auto-generated method stub
+	/*
+	 * True if the rdf:type object is a type of the resource, not an ontology construct
+	 */
+	private boolean isResourceType(RDFNode object) {
+		if( !object.isURIResource())
+			return false;
+		String uri = object.asResource().getURI();
+		int i = Math.max(uri.lastIndexOf('#'), uri.lastIndexOf('/'));
+		return !ignoredTypeNamespaces.contains(uri.substring(0, i + 1));
+	}
+	
+	/*
+	 * The type used to select the POJO class, out of the types of a resource
+	 */
+	private String selectResourceType(List<String> types) {
+		if( types.size() == 0 )
+			return null;
+		return getTypeHierarchy().getMostSpecificType(types);
+	}
+	
+	/*
+	 * Namespaces of the rdf:types which are not types of resources, such as owl:Thing or rdfs:Resource inferred by the reasoner
+	 */
+	public Set<String> getIgnoredTypeNamespaces() {
+		return ignoredTypeNamespaces;
+	}
+	
+	/*
+	 * Ignores the rdf:types of the namespace when selecting the type of a resource. The namespace ends with # or /.
+	 */
+	public void addIgnoredTypeNamespace(String namespace) {
+		ignoredTypeNamespaces.add(model.expandPrefix(namespace));
+	}
+	
+	/*
+	 * The cached object of the URI, or a new reference object which is not populated until resolve() is called.
+	 * The class of the reference object is resolved from the rdf:type of the resource, if it fits the declared type.
+	 */
+	private GraphResource reference(String uri, Class<?> declaredType) throws ReflectiveOperationException {
+		GraphResource instance = getCached(uri);
+		// in a concurrent read, a reference object of the cache is left to the other threads, see claim
+		if( instance != null && !(instance.isReference() && isPrivate() && unpublished.get().get(uri) != instance))
+			return instance;
+		
+		List<String> types = new LinkedList<>();
+		StmtIterator iter = model.listStatements(
+				new SimpleSelector(model.getResource(uri), RDF.type, (RDFNode) null));
+		while (iter.hasNext()) {
+			RDFNode object = iter.nextStatement().getObject();
+			if( isResourceType(object))
+				types.add(object.toString());
+		}
+		String resourceType = selectResourceType(types);
+		Class<?> resourceClass = this.resolveResourceClass(resourceType);
+		if( declaredType == null || !declaredType.isAssignableFrom(resourceClass))
+			resourceClass = declaredType != null ? declaredType : GraphResource.class;
+		
+		instance = (GraphResource) getClassMapping(resourceClass).newInstance();
+		instance.setGraph(this);
+		instance.setUri(uri);
+		instance.setType(resourceType);
+		instance.setTypes(types.toArray(new String[types.size()]));
+		instance.setReference(true);
+		this.putToCache(instance);
+		return instance;
+	}
+	
+	/*
+	 * Populates a reference object from the graph, in place, see GraphResource.resolve()
+	 */
+	public GraphResource resolve(GraphResource res) {
+		Lock lock = enterRead();
 		try {
-			Resource resourceClass;
-			Class<GraphResource> c = (Class<GraphResource>) res.getClass();
-			if (c.isAnnotationPresent(OWLClass.class)) {
-				OWLClass ta = c.getAnnotation(OWLClass.class);
-				resourceClass = model.getResource(ta.value());
+			return resolve(res, null);
+		} finally {
+			leave(lock);
+		}
+	}
+	
+	/*
+	 * Populates the reference object in place. Returns the object, or in the concurrent mode a private copy if
+	 * another thread is resolving it meanwhile, see claim.
+	 */
+	private GraphResource resolve(GraphResource res, FetchPlan plan) {
+		if( !res.isReference() || populating.get().containsKey(res.getUri()))
+			return res;
+		return populateFromGraph(model.getResource(res.getUri()), res, plan);
+	}
+	
+	/*
+	 * Resolves the references of the followed fields breadth-first, down to the depth of the plan
+	 */
+	private void fetch(GraphResource root, FetchPlan plan) {
+		try {
+			fetchPlan(root, plan);
+		} finally {
+			releasePlanned();
+		}
+	}
+	
+	/*
+	 * Removes the objects populated with a fetch plan from the object cache. Their references outside the plan are
+	 * left unresolved, so they are not returned by the calls populating to the full depth.
+	 */
+	private void releasePlanned() {
+		List<GraphResource> released = planned.get();
+		for( GraphResource res: released) {
+			if( objectCache.get(res.getUri()) == res)
+				objectCache.remove(res.getUri());
+			unpublished.get().remove(res.getUri(), res);
+		}
+		released.clear();
+	}
+	
+	private void fetchPlan(GraphResource root, FetchPlan plan) {
+		Set<GraphResource> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		visited.add(root);
+		List<GraphResource> level = new LinkedList<>();
+		level.add(root);
+		for( int depth = 0; !level.isEmpty(); depth++) {
+			List<GraphResource> next = new LinkedList<>();
+			for( GraphResource res: level) {
+				if( plan.isAttributes() && !res.isPopulateProperties())
+					getAttributeMetadata(res);
+				if( depth >= plan.getMaxDepth())
+					continue;
+				for (FieldBinding b : getClassMapping(res.getClass()).getBindings()) {
+					if( b.getGetter() == null || !plan.follows(b.getName()) || (b.getKind() != FieldBinding.Kind.RESOURCE && b.getKind() != FieldBinding.Kind.RESOURCE_LIST))
+						continue;
+					Object value;
+					try {
+						value = b.getAccessor().get(res);
+					} catch (ReflectiveOperationException e) {
+						log.error("Could not read field " + b.getName() + " of " + res.getUri(), e);
+						continue;
+					}
+					List<? extends GraphResource> referenced;
+					if( value instanceof List)
+						referenced = listedResources((List<?>) value);
+					else if( value instanceof GraphResource)
+						referenced = Collections.singletonList((GraphResource) value);
+					else
+						continue;
+					for( GraphResource r: referenced) {
+						if( r == null)
+							continue;
+						if( r.isReference())
+							resolve(r, plan);
+						if( visited.add(r))
+							next.add(r);
+					}
+				}
 			}
-			/*
-			 * Method[] methods = res.getClass().getMethods(); for (Method m :
-			 * methods) { if
-			 * (m.isAnnotationPresent(com.viceversatech.rdfbeans.annotations.RDF
-			 * .class)) {
-			 * 
-			 * com.viceversatech.rdfbeans.annotations.RDF ta =
-			 * m.getAnnotation(com.viceversatech.rdfbeans.annotations.RDF.class)
-			 * ; Object value = m.invoke(res); // invoke getXXX method
-			 * 
-			 * Property property = model.getProperty(ta.value());
-			 * resource.addProperty(property, value.toString());
-			 * log.debug("added property " + ta.value() + " = " +
-			 * value.toString()); } }
-			 */
-
-			Field[] fields = getAllClassFields( res.getClass());
-			
-			for (Field f : fields) {
-				if (f.isAnnotationPresent(OWLProperty.class)) {
-					OWLProperty ta = f.getAnnotation(OWLProperty.class);
-					if (ta.query().length() > 0) {
-						
-						String queryString = this.getQueryPrefixMapping() + ta.query().replace("?resource",
-									"<" + res.getUri() + ">");
-							
-						long startTime = new Date().getTime();
+			level = next;
+		}
+	}
+	
+	/*
+	 * The resources of a List field, the references of a lazy list without populating them
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<? extends GraphResource> listedResources(List<?> value) {
+		if( value instanceof LazyResourceList)
+			return ((LazyResourceList<?>) value).references();
+		return (List<? extends GraphResource>) value;
+	}
+	
+	/*
+	 * Lazy loading mode: resource fields are set to reference objects and List fields to LazyResourceLists,
+	 * populated when resolved, instead of populating the referenced resources recursively.
+	 */
+	public void setLazyLoading(boolean lazyLoading) {
+		this.lazyLoading = lazyLoading;
+	}
+	
+	public boolean isLazyLoading() {
+		return lazyLoading;
+	}
+	
+	/*
+	 * Populate the @OWLProperty(query=...) fields, true by default
+	 */
+	public void setPopulateSparqlProperties(boolean populateSparqlProperties) {
+		this.populateSparqlProperties = populateSparqlProperties;
+	}
+	
+	public boolean isPopulateSparqlProperties() {
+		return populateSparqlProperties;
+	}
+	
+	/*
+	 * Maximum depth of the referenced resources populated with a resource, unlimited by default. The deeper
+	 * references are left as reference objects, see GraphResource.resolve().
+	 */
+	public void setPopulationDepth(int populationDepth) {
+		if( populationDepth < 0)
+			throw new IllegalArgumentException("populationDepth must not be negative: " + populationDepth);
+		this.populationDepth = populationDepth;
+	}
+	
+	public int getPopulationDepth() {
+		return populationDepth;
+	}
+	
+	/*
+	 * Unit of work mode. The mapped field values of the populated and written objects are recorded, and modify and
+	 * flush write only the fields changed since. Off by default; turning it off forgets the recorded objects.
+	 */
+	public void setDirtyTracking(boolean dirtyTracking) {
+		this.dirtyTracking = dirtyTracking;
+		if( !dirtyTracking)
+			tracked.clear();
+	}
+	
+	public boolean isDirtyTracking() {
+		return dirtyTracking;
+	}
+	
+	/*
+	 * Allows snapshot, which copies the whole graph. Off by default, so that a large graph is not copied unless
+	 * the application has chosen to, see snapshot.
+	 */
+	public void setSnapshots(boolean snapshots) {
+		this.snapshots = snapshots;
+	}
+	
+	public boolean isSnapshots() {
+		return snapshots;
+	}
+	
+	/*
+	 * Concurrent mode, for sharing the instance between threads. The reads of the graph (get, getAll, query,
+	 * select, instantiate, streams) enter the read critical section of the model and run in parallel; the
+	 * writes (create, modify, upsert, delete, updateLocation, flush, load) enter the write critical section and
+	 * are serialized. Code using getModel() directly should lock it the same way, see Model.enterCriticalSection.
+	 * 
+	 * The caches, the mappings and the spatial index are thread-safe in both modes. In the concurrent mode the
+	 * reads populate their cache misses in parallel. The new objects are private to the read until it ends, and
+	 * are then put to the object cache, unless another read has cached the resource first; a reference object of
+	 * the cache is resolved in place by one read at a time. So the other threads never see objects whose
+	 * references are not populated yet. A stream holds the read lock until it is closed. Note that the cached POJOs
+	 * are shared by the threads; modify them only in writes.
+	 */
+	public void setConcurrent(boolean concurrent) {
+		this.concurrent = concurrent;
+	}
+	
+	public boolean isConcurrent() {
+		return concurrent;
+	}
+	
+	/*
+	 * Enters the read critical section of the model in the concurrent mode. Returns the lock to leave, null if
+	 * not locked.
+	 */
+	private Lock enterRead() {
+		if( !concurrent)
+			return null;
+		Lock lock = model.getLock();
+		lock.enterCriticalSection(Lock.READ);
+		lockDepth.get()[0]++;
+		return lock;
+	}
+	
+	private Lock enterWrite() {
+		if( !concurrent)
+			return null;
+		Lock lock = model.getLock();
+		lock.enterCriticalSection(Lock.WRITE);
+		int[] depth = lockDepth.get();
+		if( depth[0]++ == 0)
+			depth[1] = 1;
+		return lock;
+	}
+	
+	private void leave(Lock lock) {
+		if( lock == null)
+			return;
+		try {
+			int[] depth = lockDepth.get();
+			if( --depth[0] == 0) {
+				depth[1] = 0;
+				publish();
+			}
+		} finally {
+			lock.leaveCriticalSection();
+		}
+	}
+	
+	/*
+	 * True if the thread is in a read of the concurrent mode, which populates its objects privately. The writes
+	 * exclude the other threads, so they use the object cache directly.
+	 */
+	private boolean isPrivate() {
+		int[] depth = lockDepth.get();
+		return concurrent && depth[0] > 0 && depth[1] == 0;
+	}
+	
+	/*
+	 * Read-only view of the graph as it is now, with its own object cache and spatial index. Long reports can run
+	 * on the snapshot while the graph is written: the snapshot does not see the later writes, nor a write half
+	 * applied, and the writes do not wait for the report. Writes to the snapshot fail.
+	 * 
+	 * WARNING! The whole graph and the positions of the spatial index are copied under the read lock, see
+	 * setConcurrent: the writers wait for the copy, and it costs time and memory linear to the size of the graph.
+	 * Snapshots are off by default, and must be turned on with setSnapshots. The inferences are made again in the
+	 * snapshot, when it is read. The located objects of the snapshot are populated when querySpatial first finds them.
+	 */
+	public Dualist snapshot() {
+		if( !snapshots)
+			throw new IllegalStateException("Snapshots are not enabled, see setSnapshots");
+		Graph copy = GraphFactory.createGraphMem();
+		List<Point> located = new ArrayList<>();
+		Lock lock = enterRead();
+		try {
+			// asserted and imported statements, without the inferences
+			Graph raw = model.getGraph() instanceof InfGraph ? ((InfGraph) model.getGraph()).getRawGraph() : model.getGraph();
+			GraphUtil.addInto(copy, raw);
+			copy.getPrefixMapping().setNsPrefixes(model);
+			spatialLock.readLock().lock();
+			try {
+				for( Object item: t.queryAll())
+					located.add((Point) item);
+			} finally {
+				spatialLock.readLock().unlock();
+			}
+		} finally {
+			leave(lock);
+		}
+		
+		// the imports are in the copy already
+		OntModelSpec spec = new OntModelSpec(model.getSpecification());
+		spec.setDocumentManager(new OntDocumentManager((String) null));
+		spec.getDocumentManager().setProcessImports(false);
+		Dualist snapshot = new Dualist(this, ModelFactory.createOntologyModel(spec, ModelFactory.createModelForGraph(new GraphReadOnly(copy))));
+		
+		for( Point pt: located) {
+			GraphResource res = (GraphResource) pt.getUserData();
+			String uri = res.getUri();
+			if( uri == null)
+				continue;
+			try {
+				// the index may have several points of a resource
+				if( snapshot.objectCache.get(uri) != null)
+					continue;
+				// a reference of the same class, the types are read from the snapshot when it is resolved
+				GraphResource ref = (GraphResource) snapshot.getClassMapping(res.getClass()).newInstance();
+				ref.setGraph(snapshot);
+				ref.setUri(uri);
+				ref.setType(res.getType());
+				ref.setTypes(res.getTypes());
+				ref.setReference(true);
+				snapshot.objectCache.put(uri, ref);
+				ref.setLat((float) pt.getY());
+				ref.setLon((float) pt.getX());
+				Point copied = snapshot.gf.createPoint(pt.getCoordinate());
+				copied.setUserData(ref);
+				ref.setGeo(copied);
+				snapshot.t.insert(copied.getEnvelopeInternal(), copied);
+			} catch (ReflectiveOperationException e) {
+				log.error("Could not add " + uri + " to the spatial index of the snapshot", e);
+			}
+		}
+		return snapshot;
+	}
+	
+	/*
+	 * Claims a reference object of the cache, shared with the other threads, for resolving it in place. If another
+	 * thread is resolving it, waits until it is published, unless this thread has claimed other objects already:
+	 * two threads waiting for each other's objects would deadlock. Returns false if the object was not claimed,
+	 * either because it has been resolved meanwhile or because another thread is still resolving it.
+	 */
+	private boolean claim(GraphResource target) {
+		CountDownLatch latch = new CountDownLatch(1);
+		while( target.isReference()) {
+			CountDownLatch other = resolving.putIfAbsent(target.getUri(), latch);
+			if( other == null) {
+				if( !target.isReference()) {
+					resolving.remove(target.getUri(), latch);
+					return false;
+				}
+				claimed.get().put(target, latch);
+				return true;
+			}
+			if( !claimed.get().isEmpty())
+				return false;
+			try {
+				other.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return false;
+	}
+	
+	/*
+	 * Publishes the objects populated by the read of the thread, when the read ends. The private objects are put
+	 * to the object cache, unless another thread has published the resource first, and the claimed reference
+	 * objects are marked resolved. Until now the other threads have not seen the objects, or have seen them as
+	 * references, so that they never see objects whose references are not populated yet.
+	 */
+	private void publish() {
+		HashMap<String, GraphResource> populated = unpublished.get();
+		IdentityHashMap<GraphResource, CountDownLatch> resolved = claimed.get();
+		if( populated.isEmpty() && resolved.isEmpty())
+			return;
+		try {
+			for( GraphResource res: populated.values()) {
+				GraphResource cached = objectCache.putIfAbsent(res.getUri(), res);
+				if( cached != null && cached.isReference() && !res.isReference()) {
+					// the reference object stays with the objects referring to it, and is resolved when read
+					objectCache.put(res.getUri(), res);
+					cached = null;
+				}
+				if( cached == null && !res.isReference())
+					updateSpatialIndex(res);
+			}
+			for( Map.Entry<GraphResource, CountDownLatch> e: resolved.entrySet()) {
+				e.getKey().setReference(false);
+				resolving.remove(e.getKey().getUri(), e.getValue());
+				e.getValue().countDown();
+			}
+		} finally {
+			populated.clear();
+			resolved.clear();
+		}
+	}
 
-						Query query = QueryFactory.create(queryString);
+	/*
+	 * Populates the @OWLProperty(query=...) fields of the resources. Each query is executed once for a batch of
+	 * resources, with ?resource bound to their URIs by a VALUES block, and the results are set to the resources
+	 * they were found for. Queries with LIMIT, OFFSET or aggregates are executed separately for each resource.
+	 * 
+	 * The result resources are added to the worklist as references; without a worklist, they are left as references.
+	 */
+	private void populateQueryProperties(List<GraphResource> resources, Worklist worklist) {
+		// query -> the resources having a field with the query, and the fields
+		Map<String, List<GraphResource>> owners = new LinkedHashMap<>();
+		Map<String, List<FieldBinding>> fields = new HashMap<>();
+		for( GraphResource res: resources) {
+			for (FieldBinding b : getClassMapping(res.getClass()).getQueryBindings()) {
+				owners.computeIfAbsent(b.getProperty().query(), k -> new ArrayList<>()).add(res);
+				fields.computeIfAbsent(b.getProperty().query(), k -> new ArrayList<>()).add(b);
+			}
+		}
+		
+		for( Map.Entry<String, List<GraphResource>> e: owners.entrySet()) {
+			List<GraphResource> owner = e.getValue();
+			List<FieldBinding> field = fields.get(e.getKey());
+			try {
+				Query template = compileQuery(e.getKey());
+				if( template.hasLimit() || template.hasOffset() || template.hasAggregators() || template.hasGroupBy() || template.hasValues()) {
+					// the results of one resource would affect the others
+					for( int i = 0; i < owner.size(); i++) {
+						Query query = QueryCache.bind(template, "resource", NodeFactory.createURI(owner.get(i).getUri()));
+						List<Resource> results = new ArrayList<>();
 						try (QueryExecution qexec = QueryExecutionFactory
 								.create(query, model)) {
-							ResultSet results = qexec.execSelect();
-
-							List<GraphResource> resPojoList = new LinkedList<>();
-							boolean isList = false;
-
-							for (; results.hasNext();) {
-								QuerySolution soln = results.nextSolution();
-								// log.debug(soln.toString());
-								Resource s = soln.getResource("result");
-								String pojoClass = f.getGenericType()
-										.toString();
-
-								if( ta.uriFilter().length() > 1) {
-
-									if( !(s.toString()).matches(wildcardToRegex(ta.uriFilter()))) {
-										log.debug("Resource URI does not match filter, skip: " + f.getName() + ", object: " + s.toString());
-										continue;
-									}
-									else
-										log.debug("Resource URI matches filter: " + f.getName() + ", object: " + s.toString());
-
-									}
-									if( ta.attributeType().length() > 1) {
-										StmtIterator iter = model.listStatements(
-												new SimpleSelector((Resource) s, RDF.type, (RDFNode) null));
-										while (iter.hasNext()) {
-											Statement stmt = iter.nextStatement(); // get next statement
-											RDFNode resType = stmt.getObject(); // get the object
-											if( !resType.toString().equals(model.expandPrefix(ta.attributeType()))) {
-												log.debug("Resource type does not match filter, skip: " + f.getName() + ", object: " + s.toString());
-												continue;
-											}
-										}
-									}							
+							ResultSet rs = qexec.execSelect();
+							while( rs.hasNext())
+								results.add(rs.nextSolution().getResource("result"));
+						}
+						setQueryProperty(owner.get(i), field.get(i), results, worklist);
+					}
+					continue;
+				}
+				
+				for( int from = 0; from < owner.size(); from += BATCH_SIZE) {
+					int to = Math.min(owner.size(), from + BATCH_SIZE);
+					Set<Node> nodes = new LinkedHashSet<>();
+					for( GraphResource res: owner.subList(from, to))
+						nodes.add(NodeFactory.createURI(res.getUri()));
 					
-								
-								
-								if( pojoClass.contains("java.util.List")) {
-									pojoClass = pojoClass.substring(
-										pojoClass.indexOf("<") + 1,
-										pojoClass.indexOf(">"));
-									isList = true;
-								}
-								else {
-									pojoClass=pojoClass;
-								}
-								GraphResource instance;
-								if (objectCache.containsKey(s.toString())) {
-									instance = objectCache.get(s.toString());
-								} else {
-									instance = populateFromGraph( s);
-									this.putToCache(instance);
-								}
-							/*	if(ta.populateReferencedResource() && instance.isReference()) {
-									populateFromGraph(instance, s);
-									instance.setReference(false);
-								}*/
-								this.putToCache(instance);
-								
-								resPojoList.add(instance);
-							}
-							if( isList ) {
-								Method setter;
-								setter = res.getClass().getMethod(
-										Constants.SET
-												+ f.getName().substring(0, 1)
-														.toUpperCase()
-												+ f.getName().substring(1),
-										List.class);
-								setter.invoke(res, resPojoList); // invoke getXXX
-																// method
-							}
-							else if( !isList && resPojoList.size() > 0){
-
-								Method setter = res.getClass().getMethod(
-										Constants.SET
-												+ f.getName().substring(0, 1)
-														.toUpperCase()
-												+ f.getName().substring(1),
-										Class.forName(f.getType().getName()));
-								setter.invoke(res, resPojoList.get(0)); // invoke getXXX
-							}
-
+					Query query = QueryCache.values(template, "resource", nodes);
+					if( !query.isQueryResultStar() && !query.getProjectVars().contains(Var.alloc("resource")))
+						query.addResultVar("resource");
+					
+					// resource URI -> results
+					Map<String, List<Resource>> results = new HashMap<>();
+					try (QueryExecution qexec = QueryExecutionFactory
+							.create(query, model)) {
+						ResultSet rs = qexec.execSelect();
+						while( rs.hasNext()) {
+							QuerySolution soln = rs.nextSolution();
+							results.computeIfAbsent(soln.getResource("resource").getURI(), k -> new ArrayList<>()).add(soln.getResource("result"));
 						}
-
+					}
+					for( int i = from; i < to; i++) {
+						List<Resource> r = results.get(owner.get(i).getUri());
+						setQueryProperty(owner.get(i), field.get(i), r != null ? r : Collections.emptyList(), worklist);
 					}
 				}
+			} catch (Exception ex) {
+				log.error("Exception during querying of a graph, query= " + e.getKey(), ex);
 			}
+		}
+	}
+	
+	/*
+	 * Sets the results of the query of the field to the resource
+	 */
+	private void setQueryProperty(GraphResource res, FieldBinding b, List<Resource> results, Worklist worklist) {
+		try {
+			List<GraphResource> resPojoList = new LinkedList<>();
+			boolean isList = false;
 
+			for (Resource s: results) {
+
+				if( !b.acceptsUri(s.toString())) {
+					log.debug("Resource URI does not match filter, skip: " + b.getName() + ", object: " + s.toString());
+					continue;
+				}
+				if( b.getAttributeType() != null) {
+					// one of the types of the resource must be the type of the field
+					boolean matches = false;
+					StmtIterator iter = model.listStatements(
+							new SimpleSelector((Resource) s, RDF.type, (RDFNode) null));
+					while (iter.hasNext() && !matches) {
+						RDFNode resType = iter.nextStatement().getObject();
+						matches = resType.toString().equals(b.getAttributeType());
+					}
+					iter.close();
+					if( !matches) {
+						log.debug("Resource type does not match filter, skip: " + b.getName() + ", object: " + s.toString());
+						continue;
+					}
+				}							
+
+				if( b.getKind() == FieldBinding.Kind.RESOURCE_LIST || b.getKind() == FieldBinding.Kind.URI_LIST) {
+					isList = true;
+				}
+				GraphResource instance = reference(s.toString(), b.getElementType() != null ? b.getElementType() : b.getField().getType());
+				if( worklist != null)
+					worklist.add(instance);
+				
+				resPojoList.add(instance);
+			}
+			if( isList ) {
+				if( worklist == null) {
+					LazyResourceList<GraphResource> lazyList = new LazyResourceList<>();
+					lazyList.addAll(resPojoList);
+					requireSetter(b, res).set(res, lazyList); // invoke setXXX method
+				}
+				else
+					requireSetter(b, res).set(res, resPojoList); // invoke setXXX method
+			}
+			else if( !isList && resPojoList.size() > 0){
+				requireSetter(b, res).set(res, resPojoList.get(0)); // invoke setXXX
+			}
 		} catch (Exception e) {
 			log.error("Exception during querying of a graph, resource URI= " + res.getUri(), e);
 		}
@@ -1844,83 +3334,73 @@ public class Dualist {
 	 * 
 	 */
 	public List<Attribute> getAttributeMetadata( GraphResource res) {
+		Lock lock = enterRead();
+		try {
 		
-		if( res.isPopulateProperties())
-			return res.getAttributes();
-		Class resClass = res.getClass();
+			if( res.isPopulateProperties())
+				return res.getAttributes();
+			ClassMapping mapping = getClassMapping(res.getClass());
 		
 		
-		Resource resource = model.getResource(res.getUri());
+			Resource resource = model.getResource(res.getUri());
 
-		StmtIterator iter = model.listStatements(
-			new SimpleSelector(resource, null, (RDFNode) null));
+			StmtIterator iter = model.listStatements(
+				new SimpleSelector(resource, null, (RDFNode) null));
 
 		
-		// get all triples
-		while (iter.hasNext()) {
-			Statement stmt = iter.nextStatement(); // get next statement
-		//	Resource subject = stmt.getSubject(); // get the subject
-			Property predicate = stmt.getPredicate(); // get the predicate
-			RDFNode object = stmt.getObject(); // get the object
+			// get all triples
+			while (iter.hasNext()) {
+				Statement stmt = iter.nextStatement(); // get next statement
+			//	Resource subject = stmt.getSubject(); // get the subject
+				Property predicate = stmt.getPredicate(); // get the predicate
+				RDFNode object = stmt.getObject(); // get the object
 	
-			// if a rdf:type triple, add to types
-			if (predicate.toString().endsWith("ns#type")) {
-				continue;
-			}
-		
-			GraphResource.AttributeRestriction ar = null;
-			OntProperty p2 = model.getOntProperty(predicate.getURI());
-			Iterator<Restriction> i = p2.listReferringRestrictions();
-			while (i.hasNext()) {
-			    Restriction r = i.next();
-			    if( r.getPropertyValue( OWL2.minQualifiedCardinality) != null ) {
-				    	ar = res.new AttributeRestriction(GraphResource.ATTRIBUTE_RESTRICTION.MIN_CARDINALITY, r.getPropertyValue( OWL2.minQualifiedCardinality).asLiteral().getInt());
-				    	
-				    }
-				    else if( r.getPropertyValue( OWL2.maxQualifiedCardinality) != null ) {
-				    	ar = res.new AttributeRestriction(GraphResource.ATTRIBUTE_RESTRICTION.MAX_CARDINALITY, r.getPropertyValue( OWL2.maxQualifiedCardinality).asLiteral().getInt());						    
-				    }
-			}
-
-			// get the attribute basic name (for example requires5 -> requires)
-			String attrName = null;
-			Field[] fields = getAllClassFields( resClass);
-			for (Field f : fields) {
-				if (f.isAnnotationPresent(OWLProperty.class)) {
-					OWLProperty ta = f.getAnnotation(OWLProperty.class);
-					
-					if (ta.value().equals(predicate.toString())
-							|| model.expandPrefix(ta.value())
-									.equals(predicate.getURI()) || model.expandPrefix(ta.value2() ).equals(predicate.getURI()) || model.expandPrefix(ta.value3() ).equals(predicate.getURI()) || model.expandPrefix(ta.value4() ).equals(predicate.getURI()) || model.expandPrefix(ta.value5() ).equals(predicate.getURI()) || model.expandPrefix(ta.value6() ).equals(predicate.getURI()) )  {					
-						attrName = f.getName();
-					}
+				// if a rdf:type triple, add to types
+				if (RDF.type.equals(predicate)) {
+					continue;
 				}
-			}
-			if( attrName == null) 
-				continue;
-			List<GraphResource.Attribute> props = res.getAttributes();
-			GraphResource.Attribute att = null;
-			if( object instanceof Resource)
-				att = res.new Attribute( attrName,predicate.getURI(),((Resource) object).getURI());
-			else if( object instanceof Literal) {
-				String cleanedLiteralValue = object.toString();
-				if( cleanedLiteralValue.indexOf('^') > 0 ) {
-					cleanedLiteralValue = cleanedLiteralValue.substring(0, cleanedLiteralValue.indexOf('^'));
+		
+				// get the attribute basic name (for example requires5 -> requires)
+				String attrName = null;
+				FieldBinding[] candidates = mapping.getResourceBindings(predicate.getURI());
+				if( candidates.length > 0) {
+					attrName = candidates[candidates.length - 1].getName();
 				}
-				att = res.new Attribute( attrName,predicate.getURI(),cleanedLiteralValue);
+				if( attrName == null) 
+					continue;
+				List<GraphResource.Attribute> props = res.getAttributes();
+				GraphResource.Attribute att = null;
+				if( object instanceof Resource)
+					att = res.new Attribute( attrName,predicate.getURI(),((Resource) object).getURI());
+				else if( object instanceof Literal) {
+					String cleanedLiteralValue = object.toString();
+					if( cleanedLiteralValue.indexOf('^') > 0 ) {
+						cleanedLiteralValue = cleanedLiteralValue.substring(0, cleanedLiteralValue.indexOf('^'));
+					}
+					att = res.new Attribute( attrName,predicate.getURI(),cleanedLiteralValue);
 
+				}
+				att.restriction = restriction(res, predicate);
+				props.add(att);
+				res.setAttributes(props);
 			}
-			if( ar != null) 
-				att.restriction = ar;
-			props.add(att);
-			res.setAttributes(props);
-		}
-		res.setPopulateProperties(true);
-		return res.getAttributes();
+			res.setPopulateProperties(true);
+			return res.getAttributes();
 		
+		} finally {
+			leave(lock);
+		}
 	}
 	
 	
+	/*
+	 * The cardinality restriction of the property for the type of the resource, null if there is none
+	 */
+	private AttributeRestriction restriction(GraphResource res, Property predicate) {
+		RestrictionIndex.Cardinality c = getRestrictionIndex().get(predicate.getURI(), res.getType());
+		return c != null ? res.new AttributeRestriction(c.getKind(), c.getValue()) : null;
+	}
+	
 	/*
 	 * Populate resource property in POJO model. Uses getXXX and setXXX to
 	 * access values.
@@ -1931,249 +3411,135 @@ public class Dualist {
 	 * reference to the property, containing only URI refence. Referenced
 	 * resource in not instantiated
 	 * 
-	 */
-	protected void instantiateResourceProperty(GraphResource pojoResource,
-			Property predicate, RDFNode object) {
-		try {
-		//	log.info("instantiate " + object.toString());
-			AttributeRestriction ar = null;
-			String pojoAttributeName = null;
-			
-			Field[] fields = getAllClassFields( pojoResource.getClass());
-			for (Field f : fields) {
-				if (f.isAnnotationPresent(OWLProperty.class)) {
-					OWLProperty ta = f.getAnnotation(OWLProperty.class);
-					
-					if(ta.value().contains("^")) {
-						log.debug("A complex property in annotation, skip: " + ta.value());
-						continue;
-					}
-
-					if( ta.uriFilter().length() > 1) {
-
-						if( !(object.toString()).matches(wildcardToRegex(ta.uriFilter()))) {
-							log.debug("Resource URI does not match filter, skip: " + f.getName() + ", object: " + object.toString());
-							continue;
-						}
-						else
-							log.debug("Resource URI matches filter: " + f.getName() + ", object: " + object.toString());
-
-					}
-					if( ta.attributeType().length() > 1) {
-						StmtIterator iter = model.listStatements(
-								new SimpleSelector((Resource) object, RDF.type, (RDFNode) null));
-						while (iter.hasNext()) {
-							Statement stmt = iter.nextStatement(); // get next statement
-							RDFNode resType = stmt.getObject(); // get the object
-							if( !resType.toString().equals(model.expandPrefix(ta.attributeType()))) {
-								log.debug("Resource type does not match filter, skip: " + f.getName() + ", object: " + object.toString());
-								continue;
-							}
-						}
-					}	
-
-					
-					if (ta.value().equals(predicate.toString())
-							|| model.expandPrefix(ta.value())
-									.equals(predicate.getURI()) || model.expandPrefix(ta.value2() ).equals(predicate.getURI()) || model.expandPrefix(ta.value3() ).equals(predicate.getURI()) || model.expandPrefix(ta.value4() ).equals(predicate.getURI()) || model.expandPrefix(ta.value5() ).equals(predicate.getURI()) || model.expandPrefix(ta.value6() ).equals(predicate.getURI()) )  {
-						
-						// POJO annotation matched with predicate
-						
-						pojoAttributeName = f.getName();
-						if( ta.hasRestrictions()) {
-							
-							OntProperty p = model.getOntProperty(predicate.getURI() );
-							Iterator<Restriction> i = p.listReferringRestrictions();
-							while (i.hasNext()) {
-							    Restriction r = i.next();
-							   
-							    if( r.getPropertyValue( OWL2.minQualifiedCardinality) != null ) {
-							    	ar = pojoResource.new AttributeRestriction(GraphResource.ATTRIBUTE_RESTRICTION.MIN_CARDINALITY, r.getPropertyValue( OWL2.minQualifiedCardinality).asLiteral().getInt());
-							    	
-							    }
-							    else if( r.getPropertyValue( OWL2.maxQualifiedCardinality) != null ) {
-							    	ar = pojoResource.new AttributeRestriction(GraphResource.ATTRIBUTE_RESTRICTION.MAX_CARDINALITY, r.getPropertyValue( OWL2.maxQualifiedCardinality).asLiteral().getInt());						    
-							    }
-							}
-						}
-						
-						if (f.getType().toString()
-								.contains("org.dualist.ogm.pojo.URI")) {
-							
-							org.dualist.ogm.pojo.URI uri = new org.dualist.ogm.pojo.URI(object.toString());
-							Method setter;
-							setter = pojoResource.getClass().getMethod(
-									Constants.SET
-											+ f.getName().substring(0, 1)
-													.toUpperCase()
-											+ f.getName().substring(1),
-									org.dualist.ogm.pojo.URI.class);
-							setter.invoke(pojoResource, uri); // invoke getXXX
-							break;
-						} 
-						if (f.getGenericType().toString()
-								.contains("URI") && f.getType().toString()
-								.contains("List")) {
-
-							org.dualist.ogm.pojo.URI uri = new org.dualist.ogm.pojo.URI(object.toString());
-			
-							Method getter = pojoResource.getClass()
-									.getMethod(
-											"get" + f.getName().substring(0, 1)
-													.toUpperCase()
-													+ f.getName().substring(1),
-											null);
-							List<URI> list = (List<URI>) (getter.invoke(pojoResource)); // invoke getXXX
-							if (list == null) {
-								list = new LinkedList();
-							}
-							list.add(uri);
-							Method setter;
-
-							setter = pojoResource.getClass().getMethod(
-									Constants.SET
-											+ f.getName().substring(0, 1)
-													.toUpperCase()
-											+ f.getName().substring(1),
-									List.class);
-							setter.invoke(pojoResource, list); // invoke getXXX
-						}
-						
-						else if (f.getType().toString().contains("String")) {
-							Method setter;
-							setter = pojoResource.getClass().getMethod(
-									Constants.SET
-											+ f.getName().substring(0, 1)
-													.toUpperCase()
-											+ f.getName().substring(1),
-									String.class);
-							setter.invoke(pojoResource, object.toString()); // getXXX 
-						} 
-						else if (f.getType().toString().contains("java.util.List")) {
-							String pojoClass = f.getGenericType().toString();
-							pojoClass = pojoClass.substring(
-									pojoClass.indexOf("<") + 1,
-									pojoClass.indexOf(">")); // TODO: not clean
-							
-							// if the pojo property type is List<URI>
-							if(pojoClass.contains("org.dualist.ogm.pojo.URI")) {
-								org.dualist.ogm.pojo.URI uri = new org.dualist.ogm.pojo.URI(object.toString());
-								Method getter = pojoResource.getClass()
-										.getMethod(
-												"get" + f.getName().substring(0, 1)
-														.toUpperCase()
-														+ f.getName().substring(1),
-												null);
-								List list = (List) (getter.invoke(pojoResource)); // invoke getXXX
-								if (list == null) {
-									list = new LinkedList<>();
-								}
-								list.add(uri);
-								Method setter;
-								setter = pojoResource.getClass().getMethod(
-										Constants.SET
-												+ f.getName().substring(0, 1)
-														.toUpperCase()
-												+ f.getName().substring(1),
-										List.class);
-								setter.invoke(pojoResource, list); // invoke getXXX
-								
-							}
-							// pojo attribute type is List<... extends GraphResource>
-							else {
-							
-								GraphResource instance;
-								
-								if (objectCache.containsKey(object.toString())) {
-									instance = objectCache.get(object.toString());
-								} else {
-									Resource subRes = model
-											.getResource(object.toString());
-									instance = populateFromGraph(subRes);
-								}
-						/*		if(ta.populateReferencedResource() && instance.isReference()) {
-									Resource subRes = model
-											.getResource(object.toString());
-									populateFromGraph(instance, subRes);
-									
-								}*/
-								this.putToCache(instance);
-							
-								Method getter = pojoResource.getClass()
-										.getMethod(
-												"get" + f.getName().substring(0, 1)
-														.toUpperCase()
-														+ f.getName().substring(1),
-												null);
-								List list = (List) (getter.invoke(pojoResource)); // invoke getXXX
-								if (list == null) {
-									list = new LinkedList();
-								}
-								list.add(instance);
-								Method setter;
-								setter = pojoResource.getClass().getMethod(
-										Constants.SET
-												+ f.getName().substring(0, 1)
-														.toUpperCase()
-												+ f.getName().substring(1),
-										List.class);
-								setter.invoke(pojoResource, list); // invoke getXXX
-							}
-							
-						} else {
-							
-							GraphResource instance;
-							if (objectCache.containsKey(object.toString())) {
-								instance = objectCache.get(object.toString());
-							} else {
-								instance = (GraphResource) Class
-										.forName(f.getType().getName())
-										.newInstance();
-								instance.setUri(object.toString());
-								instance.setReference(true);
-							}
-							if(ta.populateReferencedResource() && instance.isReference()) {							
-								Resource subRes = model
-										.getResource(object.toString());
-								instance = populateFromGraph( subRes);
-								}
-							this.putToCache(instance);
-							Method setter;
-							setter = pojoResource.getClass().getMethod(
-									Constants.SET
-											+ f.getName().substring(0, 1)
-													.toUpperCase()
-											+ f.getName().substring(1),
-									Class.forName(f.getType().getName()));
-							try {
- 							setter.invoke(pojoResource, instance); // invoke getXXX
-							}
-							catch( IllegalArgumentException e) {
-								log.error("Could not call" + setter.toString() + " with " + instance.toString() );
-								e.printStackTrace();
-							}
-						}
-						
-						if( pojoResource.isPopulateProperties()) {
-							List<GraphResource.Attribute> props = pojoResource.getAttributes();
-							GraphResource.Attribute att = pojoResource.new Attribute( pojoAttributeName,predicate.getURI(),((Resource) object).getURI());
-							if( ar != null)
-								att.restriction = ar;
-							props.add(att);
-							pojoResource.setAttributes(props);
-						}
-						
-						
-						break;
+	 */
+	protected void instantiateResourceProperty(GraphResource pojoResource,
+			Property predicate, RDFNode object) {
+		Worklist worklist = lazyLoading ? null : new Worklist(populationDepth);
+		instantiateResourceProperty(pojoResource, getClassMapping(pojoResource.getClass()).getResourceBindings(predicate.getURI()), predicate, object, worklist);
+		if( worklist != null)
+			populateAll(worklist);
+	}
+	
+	/*
+	 * Sets the resource object to the first field of the candidate bindings accepting it. The referenced
+	 * resources to be populated are added to the worklist; without a worklist they are left as references.
+	 */
+	private void instantiateResourceProperty(GraphResource pojoResource, FieldBinding[] candidates,
+			Property predicate, RDFNode object, Worklist worklist) {
+		try {
+		//	log.info("instantiate " + object.toString());
+			AttributeRestriction ar = null;
+			String pojoAttributeName = null;
+			
+			for (FieldBinding b : candidates) {
+				OWLProperty ta = b.getProperty();
+				
+				if( !b.acceptsUri(object.toString())) {
+					log.debug("Resource URI does not match filter, skip: " + b.getName() + ", object: " + object.toString());
+					continue;
+				}
+				if( b.getAttributeType() != null) {
+					// one of the types of the resource must be the type of the field
+					boolean matches = false;
+					StmtIterator iter = model.listStatements(
+							new SimpleSelector((Resource) object, RDF.type, (RDFNode) null));
+					while (iter.hasNext() && !matches) {
+						RDFNode resType = iter.nextStatement().getObject();
+						matches = resType.toString().equals(b.getAttributeType());
+					}
+					iter.close();
+					if( !matches) {
+						log.debug("Resource type does not match filter, skip: " + b.getName() + ", object: " + object.toString());
+						continue;
+					}
+				}	
+
+				// POJO annotation matched with predicate
+				
+				pojoAttributeName = b.getName();
+				if( ta.hasRestrictions())
+					ar = restriction(pojoResource, predicate);
+				
+				if (b.getKind() == FieldBinding.Kind.URI) {
+					
+					org.dualist.ogm.pojo.URI uri = new org.dualist.ogm.pojo.URI(object.toString());
+					requireSetter(b, pojoResource).set(pojoResource, uri); // invoke setXXX
+					break;
+				} 
+				if (b.getKind() == FieldBinding.Kind.URI_LIST) {
+
+					org.dualist.ogm.pojo.URI uri = new org.dualist.ogm.pojo.URI(object.toString());
+	
+					@SuppressWarnings("unchecked")
+					List<URI> list = (List<URI>) (requireGetter(b, pojoResource).get(pojoResource)); // invoke getXXX
+					if (list == null) {
+						list = new LinkedList<>();
+					}
+					list.add(uri);
+					requireSetter(b, pojoResource).set(pojoResource, list); // invoke setXXX
+				}
+				
+				else if (b.getKind() == FieldBinding.Kind.STRING) {
+					requireSetter(b, pojoResource).set(pojoResource, object.toString()); // setXXX 
+				} 
+				// pojo attribute type is List<... extends GraphResource>
+				else if (b.getKind() == FieldBinding.Kind.RESOURCE_LIST) {
+					
+					GraphResource instance = reference(object.toString(), b.getElementType());
+					if( worklist != null)
+						worklist.add(instance);
+				
+					@SuppressWarnings("unchecked")
+					List<GraphResource> list = (List<GraphResource>) (requireGetter(b, pojoResource).get(pojoResource)); // invoke getXXX
+					if (list == null) {
+						list = worklist == null ? new LazyResourceList<>() : new LinkedList<>();
+					}
+					list.add(instance);
+					requireSetter(b, pojoResource).set(pojoResource, list); // invoke setXXX
+					
+				} else if (b.getKind() == FieldBinding.Kind.RESOURCE && (worklist == null || ta.populateReferencedResource())) {
+					
+					GraphResource instance = reference(object.toString(), b.getField().getType());
+					if( worklist != null)
+						worklist.add(instance);
+					requireSetter(b, pojoResource).set(pojoResource, instance); // invoke setXXX
+				} else if (b.getKind() == FieldBinding.Kind.RESOURCE) {
+					
+					// populateReferencedResource = false
+					GraphResource instance = getCached(object.toString());
+					if (instance == null) {
+						instance = (GraphResource) getClassMapping(b.getField().getType()).newInstance();
+						instance.setUri(object.toString());
+						instance.setReference(true);
+					}
+					this.putToCache(instance);
+					PropertyAccessor setter = requireSetter(b, pojoResource);
+					try {
+						setter.set(pojoResource, instance); // invoke setXXX
 					}
+					catch( IllegalArgumentException e) {
+						log.error("Could not call" + b.getSetter().toString() + " with " + instance.toString() );
+						e.printStackTrace();
+					}
+				}
+				else {
+					log.error("Field " + b.getName() + " of " + pojoResource.getClass() + " cannot hold a resource reference: " + object.toString());
+				}
+				
+				if( pojoResource.isPopulateProperties()) {
+					List<GraphResource.Attribute> props = pojoResource.getAttributes();
+					GraphResource.Attribute att = pojoResource.new Attribute( pojoAttributeName,predicate.getURI(),((Resource) object).getURI());
+					if( ar != null)
+						att.restriction = ar;
+					props.add(att);
+					pojoResource.setAttributes(props);
 				}
+				
+				
+				break;
 			}
 	
-	
-			
-		} catch (InvocationTargetException | IllegalAccessException
-				| ClassNotFoundException | NoSuchMethodException
-				| InstantiationException e) {
+		} catch (ReflectiveOperationException e) {
 			log.error("Exception during creating a graph: resource " + pojoResource.getUri() + ", predicate: " + predicate.toString(), e);
 		}
 
@@ -2181,104 +3547,23 @@ public class Dualist {
 
 	private void setPropertyValue(GraphResource pojoResource, Property predicate,
 			RDFNode object) {
-		try {
-		
-			Field[] fields  =getAllClassFields( pojoResource.getClass());
-			
-			for (Field f : fields) {
-				if (f.isAnnotationPresent(OWLProperty.class)) {
-
-					OWLProperty ta = f.getAnnotation(OWLProperty.class);
-					// log.debug("OWL prop: " + ta.value() + ",
-					// expanded " + model.expandPrefix(ta.value()) + ",
-					// predicate " + predicate.toString() );
-
-					if (ta.value().equals(predicate.toString())
-							|| model.expandPrefix(ta.value())
-									.equals(predicate.toString())) {
-						Method setter;
-						boolean found = false;
-						
-						String cleanedLiteralValue = object.toString();
-						if( cleanedLiteralValue.indexOf('^') > 0 ) {
-							cleanedLiteralValue = cleanedLiteralValue.substring(0, cleanedLiteralValue.indexOf('^'));
-						}
-						
-						try {
-							setter = pojoResource.getClass().getMethod( // try to find a setter with String parameter
-								Constants.SET
-										+ f.getName().substring(0, 1)
-												.toUpperCase()
-										+ f.getName().substring(1),
-								String.class);
-							setter.invoke(pojoResource, object.toString()); // invoke it
-							found = true;
-						}
-						catch( NoSuchMethodException e) { // no luck
-						}
-		
-						if( !found ) { //  try to find a setter with int parameter
-							try {
-								setter = pojoResource.getClass().getMethod(
-									Constants.SET
-											+ f.getName().substring(0, 1)
-													.toUpperCase()
-											+ f.getName().substring(1),
-									Integer.TYPE);
-								setter.invoke(pojoResource, new Integer(cleanedLiteralValue).intValue()); // invoke it
-								found = true;
-							}
-							catch( NoSuchMethodException e) { // no luck
-							}
-						}
+		setPropertyValue(pojoResource, getClassMapping(pojoResource.getClass()).getLiteralBindings(predicate.getURI()), predicate, object);
+	}
 	
-						if( !found ) { //  try to find a setter with float parameter
-							try {
-								setter = pojoResource.getClass().getMethod(
-									Constants.SET
-											+ f.getName().substring(0, 1)
-													.toUpperCase()
-											+ f.getName().substring(1),
-									Float.TYPE);
-								setter.invoke(pojoResource, new Float(cleanedLiteralValue)); // invoke it
-								found = true;
-							}
-							catch( NoSuchMethodException e) { // no luck
-							}
-						}
-						
-						if( !found ) { //  try to find a setter with double parameter
-							try {
-								setter = pojoResource.getClass().getMethod(
-									Constants.SET
-											+ f.getName().substring(0, 1)
-													.toUpperCase()
-											+ f.getName().substring(1),
-									Double.TYPE);
-								setter.invoke(pojoResource, new Double(cleanedLiteralValue)); // invoke it
-								found = true;
-							}
-							catch( NoSuchMethodException e) { // no luck
-							}
-						}
+	/*
+	 * Sets the literal object to all fields of the candidate bindings
+	 */
+	private void setPropertyValue(GraphResource pojoResource, FieldBinding[] candidates, Property predicate,
+			RDFNode object) {
+		try {
 		
-						if( !found ) { //  try to find a setter with boolean parameter
-							try {
-								setter = pojoResource.getClass().getMethod(
-									Constants.SET
-											+ f.getName().substring(0, 1)
-													.toUpperCase()
-											+ f.getName().substring(1),
-									Boolean.TYPE);
-								setter.invoke(pojoResource, new Boolean(cleanedLiteralValue)); // invoke it
-								found = true;
-							}
-							catch( NoSuchMethodException e) { // no luck
-							}
-						}				
-						
-					}
+			for (FieldBinding b : candidates) {
+				PropertyAccessor setter = b.getLiteralAccessor();
+				if( setter == null) { // no setter with a supported literal type
+					continue;
 				}
+				// decoded directly from the literal by the declared type of the setter
+				b.getLiteralDecoder().set(setter, pojoResource, object.asLiteral());
 			}
 		} catch (Exception e) {
 
@@ -2288,6 +3573,20 @@ public class Dualist {
 
 	}
 
+	private PropertyAccessor requireGetter(FieldBinding b, GraphResource res) throws NoSuchMethodException {
+		if( b.getGetter() == null) {
+			throw new NoSuchMethodException("No getter for field " + b.getName() + " in class " + res.getClass());
+		}
+		return b.getAccessor();
+	}
+
+	private PropertyAccessor requireSetter(FieldBinding b, GraphResource res) throws NoSuchMethodException {
+		if( b.getSetter() == null) {
+			throw new NoSuchMethodException("No setter for field " + b.getName() + " in class " + res.getClass());
+		}
+		return b.getAccessor();
+	}
+
 	/*
 	 * public void populateByQuery( FacetResource pojoResource, String
 	 * queryString) { long startTime = new Date().getTime(); Query query =
@@ -2324,7 +3623,10 @@ public class Dualist {
 	 * 
 	 */
 
-	private String wildcardToRegex(String wildcardString) {
+	/*
+	 * Regular expression of a uriFilter wildcard pattern, * matching any characters and ? one character
+	 */
+	public static String wildcardToRegex(String wildcardString) {
 	    // The 12 is arbitrary, you may adjust it to fit your needs depending
 	    // on how many special characters you expect in a single pattern.
 	    StringBuilder sb = new StringBuilder(wildcardString.length() + 12);
@@ -2359,57 +3661,112 @@ public class Dualist {
 	}
 	
 	public Field getClassField( Class<?> type, String fieldName) throws Exception {
-		
-		Field[] fields = getAllClassFields( type);
-		for( Field f:fields) {
-			if( f.getName().equals(fieldName))
-				return f;
+		return getClassMapping(type).getField(fieldName);
+	}
+	
+	/*
+	 * Mapping metadata of a POJO class: annotated fields, their expanded predicates and accessors. 
+	 * Built once per class and reused for all create, modify and populate operations.
+	 */
+	public ClassMapping getClassMapping( Class<?> type) {
+		ClassMapping mapping = classMappings.get(type);
+		if( mapping == null) {
+			mapping = new ClassMapping(type, model, accessorFactory, findGeneratedMapper(type));
+			ClassMapping existing = classMappings.putIfAbsent(type, mapping);
+			if( existing != null)
+				mapping = existing;
+		}
+		return mapping;
+	}
+	
+	/*
+	 * Looks up the mapper generated by the annotation processor for the class (<ClassName>_Mapper in the same package). 
+	 * Returns null if there is none on the classpath, and the reflective accessors are used instead.
+	 */
+	private Mapper<?> findGeneratedMapper( Class<?> type) {
+		if( !type.isAnnotationPresent(OWLClass.class))
+			return null;
+		String name = type.getName().replace('$', '_') + Mapper.SUFFIX;
+		try {
+			Class<?> mapperClass = Class.forName(name, true, type.getClassLoader());
+			Mapper<?> mapper = (Mapper<?>) mapperClass.getDeclaredConstructor().newInstance();
+			if( !type.equals(mapper.getMappedClass())) {
+				log.warn("Generated mapper " + name + " does not map " + type + ", ignored");
+				return null;
+			}
+			log.debug("Using generated mapper " + name);
+			return mapper;
+		} catch (ClassNotFoundException e) {
+			return null;
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			log.error("Could not instantiate generated mapper " + name, e);
+			return null;
 		}
-		return null;
-		
 	}
 	
-	private Field[] getAllClassFields( Class<?> type) {
-		LinkedList<Field> fs = new LinkedList<Field>();
-		getAllFieldsRec(fs, type);
-		return fs.toArray(new Field[0]);
+	/*
+	 * Drops the class mappings. Predicate URIs of the mappings are expanded with the model prefixes, 
+	 * so call this if you change the prefixes of the model directly.
+	 */
+	public void resetMappings() {
+		classMappings.clear();
+		projectionMappings.clear();
 	}
 	
-	private List<Field> getAllFieldsRec(List<Field> fields, Class<?> type) {
-	    fields.addAll(Arrays.asList(type.getDeclaredFields()));
-
-	    if (type.getSuperclass() != null) {
-	        getAllFieldsRec(fields, type.getSuperclass());
-	    }
-
-	    return fields;
+	/*
+	 * Mapping of SELECT result rows to the DTO class, see select. The map holds the mapping of each class
+	 * for the class itself, so the casts are safe.
+	 */
+	@SuppressWarnings("unchecked")
+	public <R> ProjectionMapping<R> getProjectionMapping( Class<R> type) {
+		ProjectionMapping<R> mapping = (ProjectionMapping<R>) projectionMappings.get(type);
+		if( mapping == null) {
+			mapping = new ProjectionMapping<>(type, accessorFactory);
+			ProjectionMapping<R> existing = (ProjectionMapping<R>) projectionMappings.putIfAbsent(type, mapping);
+			if( existing != null)
+				mapping = existing;
+		}
+		return mapping;
+	}
+	
+	/*
+	 * Sets the factory creating the field accessors of the class mappings. By default MethodHandle based accessors are used. 
+	 */
+	public void setAccessorFactory( AccessorFactory accessorFactory) {
+		this.accessorFactory = accessorFactory;
+		resetMappings();
 	}
 	
 	/*
 	 * Convert type of this resource. Potentially unsafe!
 	 */
 	public void convertType( String uri, String newType) {
-		try {		
-			Resource resource = null;
-			if( uri != null) {
-			// check if resource exists
-				resource = model.getResource(model.expandPrefix(uri));
+		Lock lock = enterWrite();
+		try {
+			try {		
+				Resource resource = null;
+				if( uri != null) {
+				// check if resource exists
+					resource = model.getResource(model.expandPrefix(uri));
 				
-				RDFNode typeRes = model.getResource(model.expandPrefix(newType));
+					RDFNode typeRes = model.getResource(model.expandPrefix(newType));
 				
-				if( model.containsResource(resource)) {
-					model.removeAll(resource, RDF.type, (RDFNode) null);
-				}
-				model.add(resource, RDF.type, typeRes);    
+					if( model.containsResource(resource)) {
+						model.removeAll(resource, RDF.type, (RDFNode) null);
+					}
+					model.add(resource, RDF.type, typeRes);    
 				
-				objectCache.remove(model.expandPrefix(uri));
-			}
+					objectCache.remove(model.expandPrefix(uri));
+				}
 
 			
-		} catch (Exception e) {
-			log.error("Exception during modifying of a graph ", e);
-		}
+			} catch (Exception e) {
+				log.error("Exception during modifying of a graph ", e);
+			}
 		
+		} finally {
+			leave(lock);
+		}
 	}
 	
 	public GraphResource convertNamespace(GraphResource res) {
@@ -2453,13 +3810,18 @@ public class Dualist {
 	 *
 	 */
 	public boolean containsResource(String resUri) {
-			Resource resource = null;
-			resource = model.getResource(resUri);
-			if( model.containsResource(resource)) {
-				return true;
-			}
-			else
-				return false;
+		Lock lock = enterRead();
+		try {
+				Resource resource = null;
+				resource = model.getResource(resUri);
+				if( model.containsResource(resource)) {
+					return true;
+				}
+				else
+					return false;
+		} finally {
+			leave(lock);
+		}
 	}
 	
 	
@@ -2468,10 +3830,123 @@ public class Dualist {
 	 * Clears the resource object cache
 	 */
 	public void clearCache() {
+		cacheInvalidation.drainOverflow();
+		cacheInvalidation.drain();
 		objectCache.clear();
 	}
+	
+	/*
+	 * Drops the cached POJOs of the resources changed in the graph since the last call, and the cached POJOs
+	 * directly referring to them. Changes made through create, modify, upsert and updateLocation keep the cached
+	 * object up to date and are not invalidated. The referrers of removed statements are recorded by the listener
+	 * from the removed triples, the graph lookup here finds the referrers of the resources still linked.
+	 * 
+	 * A change of the class and property definitions may change the inferred types of any resource, so it drops
+	 * the whole cache, see CacheInvalidationListener.getSchemaGeneration.
+	 */
+	public void invalidatePending() {
+		long schema = cacheInvalidation.getSchemaGeneration();
+		if( schema != cacheSchemaGeneration) {
+			cacheSchemaGeneration = schema;
+			cacheInvalidation.drainOverflow();
+			cacheInvalidation.drain();
+			if( objectCache.size() > 0) {
+				log.debug("Schema changed, clearing the object cache");
+				stats.invalidated(objectCache.size());
+				objectCache.clear();
+			}
+			return;
+		}
+		if( !cacheInvalidation.hasPending())
+			return;
+		if( cacheInvalidation.drainOverflow()) {
+			log.debug("Graph changed in bulk, clearing the object cache");
+			stats.invalidated(objectCache.size());
+			objectCache.clear();
+			return;
+		}
+		String[] changed = cacheInvalidation.drain();
+		if( objectCache.size() == 0)
+			return;
+		int invalidated = 0;
+		for( String uri: changed) {
+			invalidated += invalidate(uri);
+			StmtIterator it = model.listStatements(null, null, model.getResource(uri));
+			while( it.hasNext()) {
+				Resource referrer = it.nextStatement().getSubject();
+				if( referrer.isURIResource())
+					invalidated += invalidate(referrer.getURI());
+			}
+			it.close();
+		}
+		stats.invalidated(invalidated);
+	}
+	
+	private int invalidate( String uri) {
+		if( objectCache.get(uri) == null)
+			return 0;
+		objectCache.remove(uri);
+		return 1;
+	}
+	
+	public CacheInvalidationListener getCacheInvalidationListener() {
+		return cacheInvalidation;
+	}
 
+	/*
+	 * Parsed query from the query cache. Resets the cached queries, the prefix declarations and the class mappings
+	 * if the prefixes of the model have changed.
+	 */
+	private Query compileQuery( String sparqlQuery) {
+		checkPrefixes();
+		return queryCache.get(sparqlQuery);
+	}
+	
+	private void checkPrefixes() {
+		if( queryCache.prefixesChanged()) {
+			log.debug("Model prefixes changed, resetting parsed queries");
+			queryCache.reset();
+			queryPrefixMapping = null;
+			resetMappings();
+		}
+	}
+	
+	public QueryCache getQueryCache() {
+		return queryCache;
+	}
+	
+	/*
+	 * Caches the results of query, query(Class, String), queryByAttributeValue and queryRelative until the graph changes.
+	 * Any change of the graph, also through the Dualist methods, makes the cached results stale.
+	 * 
+	 * @maximumSize maximum number of cached results
+	 */
+	public void enableQueryResultCache( int maximumSize) {
+		queryResultCache = new QueryResultCache(maximumSize);
+		stats.setQueryResultCache(queryResultCache);
+	}
+	
+	public void disableQueryResultCache() {
+		queryResultCache = null;
+		stats.setQueryResultCache(null);
+	}
+	
+	/*
+	 * The query result cache, null if not enabled
+	 */
+	public QueryResultCache getQueryResultCache() {
+		return queryResultCache;
+	}
+	
+	/*
+	 * Counter increased by every change of the graph
+	 */
+	public long getGraphGeneration() {
+		return cacheInvalidation.getGeneration();
+	}
+	
 	public String getQueryPrefixMapping() {
+		checkPrefixes();
 		if( queryPrefixMapping != null)
 			return queryPrefixMapping;
 		queryPrefixMapping = new String();
@@ -2507,9 +3982,35 @@ public class Dualist {
 	
 	
 	public GraphResource getFromCache( String uri) {
+		invalidatePending();
+		return objectCache.get(uri);
+	}
+	
+	/*
+	 * The resource being populated or the cached one
+	 */
+	private GraphResource getCached( String uri) {
+		GraphResource res = populating.get().get(uri);
+		if( res == null && concurrent)
+			res = unpublished.get().get(uri);
+		if( res != null)
+			return res;
+		invalidatePending();
 		return objectCache.get(uri);
 	}
 	
+	/*
+	 * Replaces the resource object cache, e.g. with a BoundedObjectCache. The current cache contents are dropped.
+	 */
+	public void setObjectCache( ObjectCache objectCache) {
+		this.objectCache = objectCache;
+		stats.setCache(objectCache);
+	}
+	
+	public ObjectCache getObjectCache() {
+		return objectCache;
+	}
+	
 	
 	/* Put 
 	 * 
@@ -2519,6 +4020,10 @@ public class Dualist {
 			log.error("ERROR: trying to put a null object to cache! ");
 			return;
 		}
+		if( isPrivate()) {
+			unpublished.get().put(obj.getUri(), obj);
+			return;
+		}
 		GraphResource obj2 = objectCache.get(obj.getUri());
 		
 		if( obj2 != null && System.identityHashCode(obj2) != System.identityHashCode(obj)) {
@@ -2528,13 +4033,47 @@ public class Dualist {
 	}
 	
 	
+	/*
+	 * Cache and population statistics of this instance
+	 */
+	public DualistStats getStats() {
+		return stats;
+	}
+	
+	/*
+	 * Registers the statistics to the platform MBean server as org.dualist.ogm:type=DualistStats,name=<name>
+	 */
+	public void registerStatsMBean( String name) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(stats, statsObjectName(name));
+		} catch (JMException e) {
+			log.error("Could not register statistics MBean " + name, e);
+		}
+	}
+	
+	public void unregisterStatsMBean( String name) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(statsObjectName(name));
+		} catch (JMException e) {
+			log.error("Could not unregister statistics MBean " + name, e);
+		}
+	}
+	
+	private ObjectName statsObjectName( String name) throws MalformedObjectNameException {
+		return new ObjectName("org.dualist.ogm:type=DualistStats,name=" + ObjectName.quote(name));
+	}
+	
 	public int countCacheObjects() {
+		invalidatePending();
 		return objectCache.size();
 	}
 	
 	public void dumpCacheObjects() {
+		invalidatePending();
 		for( String uri: objectCache.keySet()) {
-			log.debug( uri + ": " + objectCache.get(uri).getUri());
+			GraphResource res = objectCache.get(uri);
+			if( res != null)
+				log.debug( uri + ": " + res.getUri());
 		}
 	}
 	
@@ -2602,48 +4141,58 @@ public class Dualist {
 	*/
 	
 	public List<GraphResource.Attribute> dumpResourceAttributes(String uri) {
-		List<GraphResource.Attribute> props = new LinkedList<>();
-		if( !this.containsResource(uri) ) {
-			log.debug( "Resource not found in graph" );
-			return null;
-		}
+		Lock lock = enterRead();
+		try {
+			List<GraphResource.Attribute> props = new LinkedList<>();
+			if( !this.containsResource(uri) ) {
+				log.debug( "Resource not found in graph" );
+				return null;
+			}
 
-		Resource s = model.getResource(model.expandPrefix(uri));
-		StmtIterator iter = model.listStatements( new SimpleSelector(s, null, (RDFNode) null));
-		GraphResource res = new GraphResource();
-		res.setGraph(this);
-		while (iter.hasNext()) {
-			Statement stmt = iter.nextStatement(); // get next statement
-			Resource subject = stmt.getSubject(); // get the subject
-			Property predicate = stmt.getPredicate(); // get the predicate
-			RDFNode object = stmt.getObject(); // get the object
+			Resource s = model.getResource(model.expandPrefix(uri));
+			StmtIterator iter = model.listStatements( new SimpleSelector(s, null, (RDFNode) null));
+			GraphResource res = new GraphResource();
+			res.setGraph(this);
+			while (iter.hasNext()) {
+				Statement stmt = iter.nextStatement(); // get next statement
+				Resource subject = stmt.getSubject(); // get the subject
+				Property predicate = stmt.getPredicate(); // get the predicate
+				RDFNode object = stmt.getObject(); // get the object
 			
-			props.add(res.new Attribute( predicate.getLocalName(), predicate.getURI(), object.toString()));
+				props.add(res.new Attribute( predicate.getLocalName(), predicate.getURI(), object.toString()));
+			}
+			iter.close();
+			return props;
+		} finally {
+			leave(lock);
 		}
-		iter.close();
-		return props;
 	}
 	
 	public List<GraphResource.Attribute> dumpResourceIncomingAttributes(String uri) {
-		List<GraphResource.Attribute> props = new LinkedList<>();
-		if( !this.containsResource(uri) ) {
-			log.debug( "Resource not found in graph" );
-			return null;
-		}
+		Lock lock = enterRead();
+		try {
+			List<GraphResource.Attribute> props = new LinkedList<>();
+			if( !this.containsResource(uri) ) {
+				log.debug( "Resource not found in graph" );
+				return null;
+			}
 
-		Resource s = model.getResource(model.expandPrefix(uri));
-		StmtIterator iter = model.listStatements( new SimpleSelector(null, null, s));
-		GraphResource res = new GraphResource();
-		while (iter.hasNext()) {
-			Statement stmt = iter.nextStatement(); // get next statement
-			Resource subject = stmt.getSubject(); // get the subject
-			Property predicate = stmt.getPredicate(); // get the predicate
-	//		RDFNode object = stmt.getObject(); // get the object
+			Resource s = model.getResource(model.expandPrefix(uri));
+			StmtIterator iter = model.listStatements( new SimpleSelector(null, null, s));
+			GraphResource res = new GraphResource();
+			while (iter.hasNext()) {
+				Statement stmt = iter.nextStatement(); // get next statement
+				Resource subject = stmt.getSubject(); // get the subject
+				Property predicate = stmt.getPredicate(); // get the predicate
+		//		RDFNode object = stmt.getObject(); // get the object
 			
-			props.add(res.new Attribute( predicate.getLocalName(), predicate.getURI(), subject.toString()));
+				props.add(res.new Attribute( predicate.getLocalName(), predicate.getURI(), subject.toString()));
+			}
+			iter.close();
+			return props;
+		} finally {
+			leave(lock);
 		}
-		iter.close();
-		return props;
 	}
 	
 	
@@ -0,0 +1,102 @@
+package org.dualist.ogm;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/*
+ * Controls how much of the graph is populated by a get, query, getAll or instantiate call.
+ *
+ * The referenced resources of the fetched objects are populated down to the maximum depth, following only the
+ * listed fields, or all resource fields if none are listed. The references beyond the plan are left as
+ * reference objects, see GraphResource.resolve(). The depth of the fetched objects themselves is 0, so the
+ * plan of depth 0 populates only their literal fields.
+ *
+ * The objects populated with a plan are not kept in the object cache, since their references outside the plan are
+ * not resolved: a later call without a plan populates the resources again to the full depth. Objects already
+ * cached are returned as they are.
+ *
+ * FetchPlan.depth(1).follow("memberOf").withQueries(false)
+ */
+public class FetchPlan {
+
+	public static final int UNLIMITED = Integer.MAX_VALUE;
+
+	final int maxDepth;
+	final Set<String> fields;
+	final boolean queries;
+	final boolean attributes;
+
+	FetchPlan(int maxDepth, Set<String> fields, boolean queries, boolean attributes) {
+		if( maxDepth < 0)
+			throw new IllegalArgumentException("maxDepth must not be negative: " + maxDepth);
+		this.maxDepth = maxDepth;
+		this.fields = fields;
+		this.queries = queries;
+		this.attributes = attributes;
+	}
+
+	/*
+	 * Plan following all resource fields down to the depth, running the query properties
+	 */
+	public static FetchPlan depth(int maxDepth) {
+		return new FetchPlan(maxDepth, null, true, false);
+	}
+
+	/*
+	 * Plan populating only the literal fields of the fetched objects
+	 */
+	public static FetchPlan shallow() {
+		return new FetchPlan(0, null, false, false);
+	}
+
+	/*
+	 * Copy of the plan following only the named fields
+	 */
+	public FetchPlan follow(String... fieldNames) {
+		return new FetchPlan(maxDepth, Collections.unmodifiableSet(new HashSet<>(Arrays.asList(fieldNames))), queries, attributes);
+	}
+
+	/*
+	 * Copy of the plan running the @OWLProperty(query=...) properties or not
+	 */
+	public FetchPlan withQueries(boolean queries) {
+		return new FetchPlan(maxDepth, fields, queries, attributes);
+	}
+
+	/*
+	 * Copy of the plan filling the Attribute list of the populated objects or not, see Dualist.getAttributeMetadata
+	 */
+	public FetchPlan withAttributes(boolean attributes) {
+		return new FetchPlan(maxDepth, fields, queries, attributes);
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/*
+	 * Names of the followed fields, null if all fields are followed
+	 */
+	public Set<String> getFields() {
+		return fields;
+	}
+
+	public boolean follows(String fieldName) {
+		return fields == null || fields.contains(fieldName);
+	}
+
+	public boolean isQueries() {
+		return queries;
+	}
+
+	public boolean isAttributes() {
+		return attributes;
+	}
+
+	public String toString() {
+		return "FetchPlan[depth=" + (maxDepth == UNLIMITED ? "unlimited" : String.valueOf(maxDepth)) + ", fields=" + (fields == null ? "all" : fields) + ", queries=" + queries + ", attributes=" + attributes + "]";
+	}
+
+}
@@ -0,0 +1,52 @@
+package org.dualist.ogm;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/*
+ * One page of the resources of a paged getAll or query, ordered by URI.
+ *
+ * The next page is read by passing getNext() as the after parameter of the same call. The token is the URI of the
+ * last resource of the page, so the paging does not skip or repeat resources when resources are added or removed
+ * between the pages.
+ */
+public class Page<T> implements Iterable<T> {
+
+	final List<T> items;
+	final String next;
+
+	Page(List<T> items, String next) {
+		this.items = Collections.unmodifiableList(items);
+		this.next = next;
+	}
+
+	public List<T> getItems() {
+		return items;
+	}
+
+	/*
+	 * Continuation token of the next page, null if this is the last page
+	 */
+	public String getNext() {
+		return next;
+	}
+
+	public boolean hasNext() {
+		return next != null;
+	}
+
+	public int size() {
+		return items.size();
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return items.iterator();
+	}
+
+	public String toString() {
+		return "Page[size=" + items.size() + ", next=" + next + "]";
+	}
+
+}
@@ -0,0 +1,67 @@
+package org.dualist.ogm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResIterator;
+import org.apache.jena.vocabulary.RDF;
+
+/*
+ * Sorted URIs of the resources of a type, for paging. The index is read from the graph once, and then kept up to
+ * date with the subjects whose types have changed, see update.
+ */
+class SubjectIndex {
+
+	final Resource type;
+	final TreeSet<String> subjects = new TreeSet<>();
+
+	SubjectIndex(Model model, Resource type) {
+		this.type = type;
+		ResIterator it = model.listSubjectsWithProperty(RDF.type, type);
+		try {
+			while (it.hasNext()) {
+				Resource r = it.next();
+				if (r.isURIResource()) {
+					subjects.add(r.getURI());
+				}
+			}
+		} finally {
+			it.close();
+		}
+	}
+
+	/*
+	 * Adds the subjects having the type in the graph now, and removes the others
+	 */
+	synchronized void update(Model model, String[] uris) {
+		for (String uri : uris) {
+			if (model.contains(model.getResource(uri), RDF.type, type)) {
+				subjects.add(uri);
+			} else {
+				subjects.remove(uri);
+			}
+		}
+	}
+
+	/*
+	 * Up to limit URIs following the URI after, or from the first one if after is null
+	 */
+	synchronized List<String> page(String after, int limit) {
+		List<String> page = new ArrayList<>();
+		for (String uri : after != null ? subjects.tailSet(after, false) : subjects) {
+			if (page.size() >= limit) {
+				break;
+			}
+			page.add(uri);
+		}
+		return page;
+	}
+
+	synchronized int size() {
+		return subjects.size();
+	}
+
+}
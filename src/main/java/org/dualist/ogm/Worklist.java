@@ -0,0 +1,82 @@
+package org.dualist.ogm;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.dualist.ogm.mapping.ClassMapping;
+import org.dualist.ogm.pojo.GraphResource;
+
+/*
+ * Reference objects waiting to be populated, in breadth-first order. Each object is queued once. The objects
+ * referenced deeper than the maximum depth from the first populated resource are not queued, and stay references.
+ *
+ * The populated resources having query properties are collected by their depth, to populate the properties in
+ * batches. The references found in the results of a batch are queued one level below the resources of the batch.
+ */
+class Worklist {
+
+	final int maxDepth;
+	final Set<GraphResource> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	// references of the current depth and the next one
+	ArrayDeque<GraphResource> current = new ArrayDeque<>();
+	ArrayDeque<GraphResource> next = new ArrayDeque<>();
+	int depth = 0;
+
+	// resources having query properties by their depth
+	final TreeMap<Integer, List<GraphResource>> queryProperties = new TreeMap<>();
+
+	Worklist(int maxDepth) {
+		this.maxDepth = maxDepth;
+	}
+
+	/*
+	 * Queues a reference found while populating a resource of the current depth
+	 */
+	void add(GraphResource res) {
+		if( res.isReference() && depth < maxDepth && visited.add(res))
+			next.add(res);
+	}
+
+	/*
+	 * Collects a resource populated at the current depth, if its class has query properties
+	 */
+	void addQueryProperties(GraphResource res, ClassMapping mapping) {
+		if( mapping.getQueryBindings().length > 0)
+			queryProperties.computeIfAbsent(depth, d -> new ArrayList<>()).add(res);
+	}
+
+	/*
+	 * Removes and returns the collected resources of the least depth having query properties, when the queue
+	 * is empty. The depth is set back to theirs, so that the references of their results are queued below them.
+	 */
+	List<GraphResource> drainQueryProperties() {
+		Map.Entry<Integer, List<GraphResource>> shallowest = queryProperties.pollFirstEntry();
+		if( shallowest == null)
+			return Collections.emptyList();
+		depth = shallowest.getKey();
+		return shallowest.getValue();
+	}
+
+	/*
+	 * The next reference to populate, null when done
+	 */
+	GraphResource poll() {
+		if( current.isEmpty()) {
+			if( next.isEmpty())
+				return null;
+			ArrayDeque<GraphResource> swap = current;
+			current = next;
+			next = swap;
+			depth++;
+		}
+		return current.poll();
+	}
+
+}
@@ -0,0 +1,35 @@
+package org.dualist.ogm;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.dualist.ogm.pojo.GraphResource;
+
+/*
+ * Writes of a createAll, upsertAll, modify or flush. The triples are collected to a plain in-memory model, without listeners or
+ * inference, and added to the graph at once at the end of the batch, followed by the cache puts and the spatial
+ * index updates of the created objects.
+ */
+class WriteBatch {
+
+	final Model buffer = ModelFactory.createDefaultModel();
+
+	// created objects to put to the cache
+	final List<GraphResource> cached = new ArrayList<>();
+	// created objects having a location
+	final List<GraphResource> located = new ArrayList<>();
+	// URIs of the resources written again even if the graph has them, see Dualist.upsertAll
+	final Set<String> replacing = new HashSet<>();
+
+	/*
+	 * True if the batch has created the resource
+	 */
+	boolean contains(String uri) {
+		return buffer.contains(buffer.getResource(uri), null);
+	}
+
+}
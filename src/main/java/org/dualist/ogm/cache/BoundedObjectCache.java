@@ -0,0 +1,272 @@
+package org.dualist.ogm.cache;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.dualist.ogm.pojo.GraphResource;
+
+/*
+ * Size bounded LRU cache with optional soft or weak values and time-to-live.
+ *
+ * Lookups are lock-free reads of a ConcurrentHashMap, recording only the access time of the entry. When the cache
+ * grows over its maximum size, the least recently used tenth of the entries is evicted in one pass, so the
+ * eviction cost is amortized over the inserts.
+ *
+ * Note that an evicted resource may still be referenced from other POJOs. A later get() creates a new instance
+ * for its URI.
+ */
+public class BoundedObjectCache implements ObjectCache {
+
+	/*
+	 * How the cached values are referenced. SOFT values are released by the garbage collector under memory
+	 * pressure, WEAK values as soon as no POJO refers to them.
+	 */
+	public enum ReferenceType {
+		STRONG, SOFT, WEAK
+	}
+
+	final int maximumSize;
+	final long ttlNanos;
+	final ReferenceType referenceType;
+
+	final ConcurrentHashMap<String, Entry> map = new ConcurrentHashMap<>();
+	final ReferenceQueue<GraphResource> queue = new ReferenceQueue<>();
+	final ReentrantLock evictionLock = new ReentrantLock();
+	final LongAdder evictions = new LongAdder();
+
+	public BoundedObjectCache(int maximumSize) {
+		this(maximumSize, 0, TimeUnit.MILLISECONDS, ReferenceType.STRONG);
+	}
+
+	/*
+	 * @param maximumSize maximum number of cached resources
+	 * @param ttl time-to-live of an entry since it was put to the cache, 0 for no expiry
+	 */
+	public BoundedObjectCache(int maximumSize, long ttl, TimeUnit unit, ReferenceType referenceType) {
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+		}
+		this.maximumSize = maximumSize;
+		this.ttlNanos = unit.toNanos(ttl);
+		this.referenceType = referenceType;
+	}
+
+	@Override
+	public GraphResource get(String uri) {
+		Entry e = map.get(uri);
+		if (e == null) {
+			return null;
+		}
+		long now = System.nanoTime();
+		GraphResource res = e.get();
+		if (res == null || e.isExpired(now)) {
+			map.remove(uri, e);
+			return null;
+		}
+		e.accessed = now;
+		return res;
+	}
+
+	@Override
+	public void put(String uri, GraphResource resource) {
+		purge();
+		long now = System.nanoTime();
+		Entry old = map.get(uri);
+		if (old != null && old.get() == resource && !old.isExpired(now)) {
+			// already cached, Dualist puts the same resource again on every reference to it
+			old.accessed = now;
+			return;
+		}
+		map.put(uri, new Entry(uri, resource, now, ttlNanos > 0 ? now + ttlNanos : 0));
+		if (map.size() > maximumSize) {
+			evict();
+		}
+	}
+
+	@Override
+	public GraphResource putIfAbsent(String uri, GraphResource resource) {
+		purge();
+		long now = System.nanoTime();
+		GraphResource[] cached = new GraphResource[1];
+		map.compute(uri, (k, e) -> {
+			GraphResource res = e == null ? null : e.get();
+			if (res != null && !e.isExpired(now)) {
+				e.accessed = now;
+				cached[0] = res;
+				return e;
+			}
+			return new Entry(uri, resource, now, ttlNanos > 0 ? now + ttlNanos : 0);
+		});
+		if (cached[0] == null && map.size() > maximumSize) {
+			evict();
+		}
+		return cached[0];
+	}
+
+	@Override
+	public void remove(String uri) {
+		map.remove(uri);
+	}
+
+	@Override
+	public void clear() {
+		map.clear();
+		while (queue.poll() != null)
+			;
+	}
+
+	@Override
+	public int size() {
+		purge();
+		return map.size();
+	}
+
+	@Override
+	public Set<String> keySet() {
+		return new HashSet<>(map.keySet());
+	}
+
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/*
+	 * Number of entries evicted by size or expiry, not counting the values released by the garbage collector
+	 */
+	@Override
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/*
+	 * Evicts the expired entries and the least recently used ones down to 90% of the maximum size.
+	 * A thread finding the eviction in progress does not wait for it.
+	 */
+	private void evict() {
+		if (!evictionLock.tryLock()) {
+			return;
+		}
+		try {
+			if (map.size() <= maximumSize) {
+				return;
+			}
+			long now = System.nanoTime();
+			Entry[] entries = map.values().toArray(new Entry[0]);
+			// the access times are copied first: the lookups update them during the sort
+			long[] accessed = new long[entries.length];
+			for (int i = 0; i < entries.length; i++) {
+				accessed[i] = entries[i].accessed;
+			}
+			int target = maximumSize - maximumSize / 10;
+			int size = map.size();
+			int excess = Math.min(size - target, entries.length);
+			if (excess > 0) {
+				long[] sorted = accessed.clone();
+				Arrays.sort(sorted);
+				long cutoff = sorted[excess - 1];
+				for (int i = 0; i < entries.length && size > target; i++) {
+					if (accessed[i] <= cutoff && map.remove(entries[i].uri, entries[i])) {
+						size--;
+						evictions.increment();
+					}
+				}
+			}
+			for (Entry e : map.values()) {
+				if (e.isExpired(now) && map.remove(e.uri, e)) {
+					evictions.increment();
+				}
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	/*
+	 * Removes the entries whose values have been released by the garbage collector
+	 */
+	private void purge() {
+		Reference<? extends GraphResource> polled;
+		while ((polled = queue.poll()) != null) {
+			Reference<? extends GraphResource> ref = polled;
+			map.computeIfPresent(((KeyedReference) ref).uri(), (k, e) -> e.value == ref ? null : e);
+		}
+	}
+
+	interface KeyedReference {
+		String uri();
+	}
+
+	static class SoftValue extends SoftReference<GraphResource> implements KeyedReference {
+		final String uri;
+
+		SoftValue(String uri, GraphResource res, ReferenceQueue<GraphResource> queue) {
+			super(res, queue);
+			this.uri = uri;
+		}
+
+		@Override
+		public String uri() {
+			return uri;
+		}
+	}
+
+	static class WeakValue extends WeakReference<GraphResource> implements KeyedReference {
+		final String uri;
+
+		WeakValue(String uri, GraphResource res, ReferenceQueue<GraphResource> queue) {
+			super(res, queue);
+			this.uri = uri;
+		}
+
+		@Override
+		public String uri() {
+			return uri;
+		}
+	}
+
+	class Entry {
+		final String uri;
+		// GraphResource or a Reference to it
+		final Object value;
+		final long expiresAt;
+		volatile long accessed;
+
+		Entry(String uri, GraphResource res, long now, long expiresAt) {
+			this.uri = uri;
+			this.expiresAt = expiresAt;
+			this.accessed = now;
+			switch (referenceType) {
+			case SOFT:
+				value = new SoftValue(uri, res, queue);
+				break;
+			case WEAK:
+				value = new WeakValue(uri, res, queue);
+				break;
+			default:
+				value = res;
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		GraphResource get() {
+			if (value instanceof Reference) {
+				return ((Reference<GraphResource>) value).get();
+			}
+			return (GraphResource) value;
+		}
+
+		boolean isExpired(long now) {
+			return expiresAt != 0 && now - expiresAt > 0;
+		}
+	}
+
+}
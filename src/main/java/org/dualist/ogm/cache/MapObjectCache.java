@@ -0,0 +1,51 @@
+package org.dualist.ogm.cache;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.dualist.ogm.pojo.GraphResource;
+
+/*
+ * Unbounded cache, keeps the resources until they are removed or the cache is cleared. The default cache of Dualist.
+ */
+public class MapObjectCache implements ObjectCache {
+
+	final ConcurrentHashMap<String, GraphResource> map = new ConcurrentHashMap<>();
+
+	@Override
+	public GraphResource get(String uri) {
+		return map.get(uri);
+	}
+
+	@Override
+	public void put(String uri, GraphResource resource) {
+		map.put(uri, resource);
+	}
+
+	@Override
+	public GraphResource putIfAbsent(String uri, GraphResource resource) {
+		return map.putIfAbsent(uri, resource);
+	}
+
+	@Override
+	public void remove(String uri) {
+		map.remove(uri);
+	}
+
+	@Override
+	public void clear() {
+		map.clear();
+	}
+
+	@Override
+	public int size() {
+		return map.size();
+	}
+
+	@Override
+	public Set<String> keySet() {
+		return new HashSet<>(map.keySet());
+	}
+
+}
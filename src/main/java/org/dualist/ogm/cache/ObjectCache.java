@@ -0,0 +1,52 @@
+package org.dualist.ogm.cache;
+
+import java.util.Set;
+
+import org.dualist.ogm.pojo.GraphResource;
+
+/*
+ * Cache of populated POJO resources by resource URI.
+ *
+ * Dualist returns the cached instance for a URI, so the same graph resource maps to a single object while it stays in the cache.
+ * Implementations must be safe for concurrent readers.
+ */
+public interface ObjectCache {
+
+	/*
+	 * The cached resource or null
+	 */
+	GraphResource get(String uri);
+
+	void put(String uri, GraphResource resource);
+
+	/*
+	 * Puts the resource unless the URI has a cached resource already. Returns the cached resource, or null if the
+	 * resource was put. Atomic in the implementations of Dualist.
+	 */
+	default GraphResource putIfAbsent(String uri, GraphResource resource) {
+		GraphResource cached = get(uri);
+		if (cached == null) {
+			put(uri, resource);
+		}
+		return cached;
+	}
+
+	void remove(String uri);
+
+	void clear();
+
+	int size();
+
+	/*
+	 * Snapshot of the cached URIs
+	 */
+	Set<String> keySet();
+
+	/*
+	 * Number of entries evicted by the cache itself, 0 for caches that do not evict
+	 */
+	default long getEvictionCount() {
+		return 0;
+	}
+
+}
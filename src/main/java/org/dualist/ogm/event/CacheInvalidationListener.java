@@ -0,0 +1,358 @@
+package org.dualist.ogm.event;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphEvents;
+import org.apache.jena.graph.GraphListener;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.compose.MultiUnion;
+import org.apache.jena.graph.impl.GraphBase;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.reasoner.InfGraph;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.OWL2;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+
+/*
+ * Collects the URIs of the resources changed in the graph, so that Dualist can drop their stale POJOs from the object cache.
+ *
+ * The changes are only recorded here; the cache is invalidated lazily, when it is read next, so a bulk change of
+ * the graph costs one pass. If more than the threshold of resources change between two reads, or the change
+ * cannot be attributed to resources (removeAll), the whole cache is invalidated instead.
+ *
+ * The listener is registered on the base graph of the model, below the inference graph and the import union,
+ * which sees the writes made through the model and through its base model alike. Removals by pattern are reported
+ * there triple by triple, so removing the statements of one resource does not invalidate the whole cache.
+ *
+ * Changes made by Dualist for its own POJOs, which update the cache themselves, are not recorded: Dualist
+ * suspends the listener for the duration of the write on the writing thread.
+ *
+ * The listener also counts the graph generation, which is increased by every change, suspended or not, and the
+ * schema generation, which is increased by the changes of class and property definitions. The terms of those
+ * definitions are not recorded as changed resources; Dualist drops the whole cache when the schema changes.
+ *
+ * Once the type changes are tracked, see trackTypes, the subjects of the changed rdf:type triples are recorded,
+ * suspended or not, so that Dualist can update the sorted indexes of the paged getAll for them only. The subjects
+ * and objects of the properties having a domain or range are recorded too, since the graph infers their types.
+ */
+public class CacheInvalidationListener implements GraphListener {
+
+	public static final int DEFAULT_THRESHOLD = 10000;
+
+	final Set<String> pending = ConcurrentHashMap.newKeySet();
+	volatile boolean overflow = false;
+	int threshold = DEFAULT_THRESHOLD;
+
+	final AtomicLong generation = new AtomicLong();
+	final AtomicLong schemaGeneration = new AtomicLong();
+
+	// predicates of class and property definitions
+	static final Set<Node> SCHEMA_PREDICATES = new HashSet<>(Arrays.asList(RDFS.Nodes.subClassOf, RDFS.Nodes.subPropertyOf,
+			RDFS.Nodes.domain, RDFS.Nodes.range,
+			OWL.equivalentClass.asNode(), OWL.equivalentProperty.asNode(), OWL.onProperty.asNode(), OWL2.onClass.asNode(),
+			OWL.cardinality.asNode(), OWL.minCardinality.asNode(), OWL.maxCardinality.asNode(), OWL2.qualifiedCardinality.asNode(),
+			OWL2.minQualifiedCardinality.asNode(), OWL2.maxQualifiedCardinality.asNode(), OWL.someValuesFrom.asNode(),
+			OWL.allValuesFrom.asNode(), OWL.hasValue.asNode(), OWL.intersectionOf.asNode(), OWL.unionOf.asNode()));
+	// types of class and property definitions
+	static final Set<Node> SCHEMA_TYPES = new HashSet<>(Arrays.asList(OWL.Class.asNode(), RDFS.Nodes.Class, OWL.Restriction.asNode(),
+			OWL.ObjectProperty.asNode(), OWL.DatatypeProperty.asNode(), RDF.Nodes.Property));
+
+	final ThreadLocal<int[]> suspended = ThreadLocal.withInitial(() -> new int[1]);
+
+	// subjects of the changed types, null while the type changes are not tracked
+	volatile Set<Node> typingPredicates;
+	final Set<String> typeChanges = ConcurrentHashMap.newKeySet();
+	volatile boolean typesOverflow = false;
+
+	/*
+	 * Registers the listener on the base graph of the model
+	 */
+	public void register(Model model) {
+		baseGraph(model.getGraph()).getEventManager().register(this);
+	}
+
+	public void unregister(Model model) {
+		baseGraph(model.getGraph()).getEventManager().unregister(this);
+	}
+
+	/*
+	 * The graph holding the asserted triples under the inference graphs and the import unions
+	 */
+	static Graph baseGraph(Graph graph) {
+		while (true) {
+			if (graph instanceof InfGraph) {
+				graph = ((InfGraph) graph).getRawGraph();
+			} else if (graph instanceof MultiUnion && ((MultiUnion) graph).getBaseGraph() != null) {
+				graph = ((MultiUnion) graph).getBaseGraph();
+			} else {
+				return graph;
+			}
+		}
+	}
+
+	/*
+	 * Stops recording the changes made by the current thread, until resume() is called. Calls may be nested.
+	 */
+	public void suspend() {
+		suspended.get()[0]++;
+	}
+
+	public void resume() {
+		suspended.get()[0]--;
+	}
+
+	/*
+	 * Counter increased by every change of the graph
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/*
+	 * Counter increased by every change of the class and property definitions, and by the changes of the
+	 * whole graph
+	 */
+	public long getSchemaGeneration() {
+		return schemaGeneration.get();
+	}
+
+	static boolean isSchema(Triple t) {
+		Node p = t.getPredicate();
+		return SCHEMA_PREDICATES.contains(p) || (RDF.Nodes.type.equals(p) && SCHEMA_TYPES.contains(t.getObject()));
+	}
+
+	public boolean hasPending() {
+		return overflow || !pending.isEmpty();
+	}
+
+	/*
+	 * True if the whole cache must be invalidated. Resets the state.
+	 */
+	public boolean drainOverflow() {
+		if (!overflow) {
+			return false;
+		}
+		overflow = false;
+		pending.clear();
+		return true;
+	}
+
+	/*
+	 * Removes and returns the URIs of the changed resources
+	 */
+	public String[] drain() {
+		String[] uris = pending.toArray(new String[0]);
+		for (String uri : uris) {
+			pending.remove(uri);
+		}
+		return uris;
+	}
+
+	/*
+	 * Starts recording the subjects of the changed types, or resets the recorded ones. The types of the subjects
+	 * and objects of the typing predicates are inferred, so their changes are recorded too. The changes recorded
+	 * before are dropped: the caller has read the types of the whole graph.
+	 */
+	public void trackTypes(Set<Node> typingPredicates) {
+		this.typingPredicates = typingPredicates;
+		typesOverflow = false;
+		typeChanges.clear();
+	}
+
+	/*
+	 * True if the types of more than the threshold of subjects, or of the whole graph, have changed since the
+	 * last trackTypes, so that the changes were not recorded
+	 */
+	public boolean isTypesOverflow() {
+		return typesOverflow;
+	}
+
+	/*
+	 * Removes and returns the URIs of the subjects whose types may have changed
+	 */
+	public String[] drainTypeChanges() {
+		String[] uris = typeChanges.toArray(new String[0]);
+		for (String uri : uris) {
+			typeChanges.remove(uri);
+		}
+		return uris;
+	}
+
+	public void setThreshold(int threshold) {
+		this.threshold = threshold;
+	}
+
+	public int getThreshold() {
+		return threshold;
+	}
+
+	/*
+	 * Records the subject and the resource object of a changed triple. For a removed triple, the subject is the
+	 * referrer of the object even though the graph no longer links them, so both ends are recorded here rather
+	 * than looked up after the change. The class of an rdf:type triple and the terms of the class and property
+	 * definitions are not recorded: the schema changes are counted by the schema generation instead.
+	 */
+	void changed(Triple t) {
+		generation.incrementAndGet();
+		boolean schema = isSchema(t);
+		if (schema) {
+			schemaGeneration.incrementAndGet();
+		}
+		Set<Node> typing = typingPredicates;
+		if (typing != null && !typesOverflow) {
+			Node p = t.getPredicate();
+			if (RDF.Nodes.type.equals(p)) {
+				addType(t.getSubject());
+			} else if (typing.contains(p) || (!p.isConcrete() && typing.isEmpty())) {
+				addType(t.getSubject());
+				addType(t.getObject());
+			} else if (!p.isConcrete()) {
+				// a pattern removal: the objects of the typing predicates are not known
+				typesOverflow = true;
+			}
+		}
+		// the schema terms are not cached resources, and a class is not changed by typing a resource with it
+		if (schema || overflow || suspended.get()[0] > 0) {
+			return;
+		}
+		add(t.getSubject());
+		if (!RDF.Nodes.type.equals(t.getPredicate())) {
+			add(t.getObject());
+		}
+	}
+
+	private void add(Node n) {
+		if (n.isURI()) {
+			pending.add(n.getURI());
+			if (pending.size() > threshold) {
+				overflow = true;
+			}
+		}
+	}
+
+	private void addType(Node n) {
+		if (n.isURI()) {
+			typeChanges.add(n.getURI());
+			if (typeChanges.size() > threshold) {
+				typesOverflow = true;
+			}
+		}
+	}
+
+	/*
+	 * Records the triples of an added or removed graph, such as the buffer of Dualist.createAll
+	 */
+	void changed(Graph graph) {
+		ExtendedIterator<Triple> it = graph.find(Triple.ANY);
+		try {
+			while (it.hasNext()) {
+				changed(it.next());
+			}
+		} catch (RuntimeException e) {
+			changedAll();
+		} finally {
+			it.close();
+		}
+	}
+
+	void changedAll() {
+		generation.incrementAndGet();
+		schemaGeneration.incrementAndGet();
+		typesOverflow = true;
+		if (suspended.get()[0] == 0) {
+			overflow = true;
+		}
+	}
+
+	@Override
+	public void notifyAddTriple(Graph g, Triple t) {
+		changed(t);
+	}
+
+	@Override
+	public void notifyAddArray(Graph g, Triple[] triples) {
+		for (Triple t : triples) {
+			changed(t);
+		}
+	}
+
+	@Override
+	public void notifyAddList(Graph g, List<Triple> triples) {
+		for (Triple t : triples) {
+			changed(t);
+		}
+	}
+
+	@Override
+	public void notifyAddIterator(Graph g, Iterator<Triple> it) {
+		while (it.hasNext()) {
+			changed(it.next());
+		}
+	}
+
+	@Override
+	public void notifyAddGraph(Graph g, Graph added) {
+		changed(added);
+	}
+
+	@Override
+	public void notifyDeleteTriple(Graph g, Triple t) {
+		changed(t);
+	}
+
+	@Override
+	public void notifyDeleteList(Graph g, List<Triple> triples) {
+		for (Triple t : triples) {
+			changed(t);
+		}
+	}
+
+	@Override
+	public void notifyDeleteArray(Graph g, Triple[] triples) {
+		for (Triple t : triples) {
+			changed(t);
+		}
+	}
+
+	@Override
+	public void notifyDeleteIterator(Graph g, Iterator<Triple> it) {
+		while (it.hasNext()) {
+			changed(it.next());
+		}
+	}
+
+	@Override
+	public void notifyDeleteGraph(Graph g, Graph removed) {
+		changed(removed);
+	}
+
+	@Override
+	public void notifyEvent(Graph source, Object value) {
+		if (value == GraphEvents.removeAll) {
+			changedAll();
+		} else if (value instanceof GraphEvents && ((GraphEvents) value).getTriple() != null) {
+			// remove(s, p, o) with a pattern: GraphBase deletes and reports the matching triples one by one before
+			// this event, other graphs, such as the inference graphs, may not report them
+			if (source instanceof GraphBase && !(source instanceof InfGraph)) {
+				return;
+			}
+			Triple pattern = ((GraphEvents) value).getTriple();
+			if (pattern.getSubject().isConcrete()) {
+				changed(pattern);
+			} else {
+				changedAll();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,15 @@
+package org.dualist.ogm.mapping;
+
+import java.lang.reflect.Method;
+
+/*
+ * Creates the accessors of the mapped fields. Set with Dualist.setAccessorFactory.
+ */
+public interface AccessorFactory {
+
+	/*
+	 * Accessor calling the getter and setter. Either of them may be null, if the class does not define it.
+	 */
+	PropertyAccessor createAccessor(Method getter, Method setter);
+
+}
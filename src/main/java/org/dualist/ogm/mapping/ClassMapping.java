@@ -0,0 +1,193 @@
+package org.dualist.ogm.mapping;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.shared.PrefixMapping;
+import org.dualist.ogm.annotations.OWLProperty;
+
+/*
+ * Mapping metadata of a POJO class.
+ *
+ * Collects the fields of the class hierarchy and the bindings of the @OWLProperty annotated fields once,
+ * instead of re-scanning the class for every triple. Subclass fields come first, as in Class.getDeclaredFields()
+ * walk from the class towards its superclasses.
+ *
+ * The bindings are indexed by expanded predicate URI, so a statement is dispatched to its field(s) with
+ * a single hash lookup.
+ */
+public class ClassMapping {
+
+	final Class<?> type;
+	final Field[] fields;
+	final FieldBinding[] bindings;
+	// bindings of the @OWLProperty(query=...) fields
+	final FieldBinding[] queryBindings;
+
+	final Map<String, Field> fieldsByName = new HashMap<>();
+	final Map<String, FieldBinding> bindingsByName = new HashMap<>();
+
+	// value() ... value6() -> bindings, used for resource objects
+	final Map<String, FieldBinding[]> resourceBindings = new HashMap<>();
+	// value() -> bindings, used for literal objects
+	final Map<String, FieldBinding[]> literalBindings = new HashMap<>();
+
+	static final FieldBinding[] NO_BINDINGS = new FieldBinding[0];
+
+	// no-arg constructor as ()Object, null if not accessible through the public lookup
+	final MethodHandle constructor;
+
+	// generated mapper of the class, or null
+	final Mapper<?> mapper;
+
+	public ClassMapping(Class<?> type, PrefixMapping prefixes, AccessorFactory accessors) {
+		this(type, prefixes, accessors, null);
+	}
+
+	/*
+	 * Mapping using the generated mapper for instantiation and field access, where it provides an accessor.
+	 */
+	public ClassMapping(Class<?> type, PrefixMapping prefixes, AccessorFactory accessors, Mapper<?> mapper) {
+		this.type = type;
+		this.mapper = mapper;
+		this.constructor = mapper == null ? findConstructor(type) : null;
+
+		List<Field> fs = new LinkedList<>();
+		for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+			fs.addAll(Arrays.asList(c.getDeclaredFields()));
+		}
+		fields = fs.toArray(new Field[fs.size()]);
+
+		List<FieldBinding> bs = new LinkedList<>();
+		for (Field f : fields) {
+			fieldsByName.putIfAbsent(f.getName(), f);
+			if (f.isAnnotationPresent(OWLProperty.class)) {
+				FieldBinding b = new FieldBinding(type, f, prefixes, accessors, mapper);
+				bs.add(b);
+				bindingsByName.putIfAbsent(f.getName(), b);
+			}
+		}
+		bindings = bs.toArray(new FieldBinding[bs.size()]);
+
+		List<FieldBinding> qs = new LinkedList<>();
+		for (FieldBinding b : bindings) {
+			if (b.isQuery()) {
+				qs.add(b);
+			}
+			if (b.isComplex()) {
+				continue;
+			}
+			for (String p : b.getPredicates()) {
+				index(resourceBindings, p, b);
+			}
+			index(literalBindings, b.getPredicate(), b);
+		}
+		queryBindings = qs.toArray(new FieldBinding[qs.size()]);
+	}
+
+	private static void index(Map<String, FieldBinding[]> index, String predicate, FieldBinding b) {
+		FieldBinding[] bs = index.get(predicate);
+		if (bs == null) {
+			index.put(predicate, new FieldBinding[] { b });
+		} else if (bs[bs.length - 1] != b) {
+			FieldBinding[] n = Arrays.copyOf(bs, bs.length + 1);
+			n[bs.length] = b;
+			index.put(predicate, n);
+		}
+	}
+
+	private static MethodHandle findConstructor(Class<?> type) {
+		try {
+			return MethodHandles.publicLookup().findConstructor(type, MethodType.methodType(void.class))
+					.asType(MethodType.methodType(Object.class));
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			return null;
+		}
+	}
+
+	public Class<?> getType() {
+		return type;
+	}
+
+	/*
+	 * The generated mapper used by this mapping, null if the reflective accessors are used
+	 */
+	public Mapper<?> getMapper() {
+		return mapper;
+	}
+
+	/*
+	 * Creates a new instance of the class with its no-arg constructor
+	 */
+	public Object newInstance() throws ReflectiveOperationException {
+		if (mapper != null) {
+			return mapper.newInstance();
+		}
+		if (constructor == null) {
+			return type.getDeclaredConstructor().newInstance();
+		}
+		try {
+			return (Object) constructor.invokeExact();
+		} catch (Error | RuntimeException e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new InvocationTargetException(t);
+		}
+	}
+
+	/*
+	 * All fields of the class and its superclasses
+	 */
+	public Field[] getFields() {
+		return fields;
+	}
+
+	/*
+	 * Bindings of the @OWLProperty annotated fields
+	 */
+	public FieldBinding[] getBindings() {
+		return bindings;
+	}
+
+	/*
+	 * Bindings of the fields populated by a SPARQL query
+	 */
+	public FieldBinding[] getQueryBindings() {
+		return queryBindings;
+	}
+
+	/*
+	 * Bindings of the fields having the predicate as value() ... value6(), in field order.
+	 * Used when the object of the statement is a resource.
+	 */
+	public FieldBinding[] getResourceBindings(String predicateUri) {
+		FieldBinding[] bs = resourceBindings.get(predicateUri);
+		return bs != null ? bs : NO_BINDINGS;
+	}
+
+	/*
+	 * Bindings of the fields having the predicate as value(), in field order.
+	 * Used when the object of the statement is a literal.
+	 */
+	public FieldBinding[] getLiteralBindings(String predicateUri) {
+		FieldBinding[] bs = literalBindings.get(predicateUri);
+		return bs != null ? bs : NO_BINDINGS;
+	}
+
+	public Field getField(String name) {
+		return fieldsByName.get(name);
+	}
+
+	public FieldBinding getBinding(String name) {
+		return bindingsByName.get(name);
+	}
+
+}
@@ -0,0 +1,291 @@
+package org.dualist.ogm.mapping;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.jena.shared.PrefixMapping;
+import org.dualist.ogm.Constants;
+import org.dualist.ogm.Dualist;
+import org.dualist.ogm.annotations.OWLProperty;
+import org.dualist.ogm.pojo.GraphResource;
+import org.dualist.ogm.pojo.URI;
+
+/*
+ * Binding of a single @OWLProperty annotated field to the graph.
+ *
+ * Holds the expanded predicate URIs of the annotation, the compiled uriFilter,
+ * the resolved getter/setter methods and their accessors, so that they are computed only once per class.
+ */
+public class FieldBinding {
+
+	/*
+	 * Java side shape of the field, decides how graph values are set to it.
+	 */
+	public enum Kind {
+		URI, URI_LIST, STRING, RESOURCE, RESOURCE_LIST, VALUE
+	}
+
+	final Field field;
+	final OWLProperty property;
+	final Kind kind;
+	final Class<?> elementType;
+
+	// expanded value()
+	final String predicate;
+	// expanded value(), value2() ... value6()
+	final String[] predicates;
+	final String attributeType;
+	final Pattern uriFilter;
+
+	final Method getter;
+	final Method setter;
+	final Method literalSetter;
+	final Class<?> literalType;
+	final LiteralDecoder literalDecoder;
+
+	final PropertyAccessor accessor;
+	final PropertyAccessor literalAccessor;
+
+	FieldBinding(Class<?> owner, Field field, PrefixMapping prefixes, AccessorFactory accessors, Mapper<?> mapper) {
+		this.field = field;
+		this.property = field.getAnnotation(OWLProperty.class);
+
+		predicate = prefixes.expandPrefix(property.value());
+		List<String> names = new LinkedList<>();
+		for (String name : new String[] { property.value(), property.value2(), property.value3(),
+				property.value4(), property.value5(), property.value6() }) {
+			if (name.length() > 0 && !name.contains("^")) {
+				names.add(prefixes.expandPrefix(name));
+			}
+		}
+		predicates = names.toArray(new String[names.size()]);
+
+		attributeType = property.attributeType().length() > 1 ? prefixes.expandPrefix(property.attributeType()) : null;
+		uriFilter = property.uriFilter().length() > 1 ? Pattern.compile(Dualist.wildcardToRegex(property.uriFilter())) : null;
+
+		Class<?> type = field.getType();
+		elementType = resolveElementType(field);
+		if (type.equals(URI.class)) {
+			kind = Kind.URI;
+		} else if (List.class.isAssignableFrom(type)) {
+			kind = URI.class.equals(elementType) ? Kind.URI_LIST : Kind.RESOURCE_LIST;
+		} else if (type.equals(String.class)) {
+			kind = Kind.STRING;
+		} else if (GraphResource.class.isAssignableFrom(type)) {
+			kind = Kind.RESOURCE;
+		} else {
+			kind = Kind.VALUE;
+		}
+
+		getter = findGetter(owner, field);
+		switch (kind) {
+		case URI:
+			setter = findMethod(owner, setterName(field), URI.class);
+			break;
+		case URI_LIST:
+		case RESOURCE_LIST:
+			setter = findMethod(owner, setterName(field), List.class);
+			break;
+		case STRING:
+			setter = findMethod(owner, setterName(field), String.class);
+			break;
+		default:
+			setter = findMethod(owner, setterName(field), type);
+		}
+		literalSetter = findLiteralSetter(owner, field);
+		literalType = literalSetter != null ? literalSetter.getParameterTypes()[0] : null;
+		literalDecoder = literalType != null ? LiteralDecoder.forType(literalType) : null;
+
+		// generated accessors call the setter taking the declared field type
+		PropertyAccessor generated = mapper != null ? mapper.getAccessor(field.getName()) : null;
+		if (generated != null && (setter == null || setter.getParameterTypes()[0].equals(type))) {
+			accessor = generated;
+		} else {
+			accessor = accessors.createAccessor(getter, setter);
+		}
+		if (literalSetter == null) {
+			literalAccessor = null;
+		} else if (generated != null && literalType.equals(type)) {
+			literalAccessor = generated;
+		} else {
+			literalAccessor = accessors.createAccessor(getter, literalSetter);
+		}
+	}
+
+	public Field getField() {
+		return field;
+	}
+
+	public String getName() {
+		return field.getName();
+	}
+
+	public OWLProperty getProperty() {
+		return property;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/*
+	 * Element class of a List field, null if the field is not parameterized
+	 */
+	public Class<?> getElementType() {
+		return elementType;
+	}
+
+	/*
+	 * Expanded URI of the primary property value()
+	 */
+	public String getPredicate() {
+		return predicate;
+	}
+
+	/*
+	 * Expanded URIs of value(), value2() ... value6()
+	 */
+	public String[] getPredicates() {
+		return predicates;
+	}
+
+	public boolean matches(String predicateUri) {
+		for (String p : predicates) {
+			if (p.equals(predicateUri)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Complex (inverse) property paths, such as "^society:member", are not mapped directly
+	 */
+	public boolean isComplex() {
+		return property.value().contains("^");
+	}
+
+	public boolean isQuery() {
+		return property.query().length() > 0;
+	}
+
+	/*
+	 * Expanded attributeType() or null if not defined
+	 */
+	public String getAttributeType() {
+		return attributeType;
+	}
+
+	/*
+	 * Checks the URI of a referenced resource against uriFilter(). Always true if no filter is defined.
+	 */
+	public boolean acceptsUri(String uri) {
+		return uriFilter == null || uriFilter.matcher(uri).matches();
+	}
+
+	public Method getGetter() {
+		return getter;
+	}
+
+	/*
+	 * Setter for a referenced resource value, parameter type depends on the field kind
+	 */
+	public Method getSetter() {
+		return setter;
+	}
+
+	/*
+	 * Setter for a literal value. The setter taking the field type if a LiteralDecoder exists for it, otherwise
+	 * the first one of setXXX(String), setXXX(int), setXXX(float), setXXX(double) and setXXX(boolean) found.
+	 */
+	public Method getLiteralSetter() {
+		return literalSetter;
+	}
+
+	/*
+	 * Parameter type of the literal setter, null if there is none
+	 */
+	public Class<?> getLiteralType() {
+		return literalType;
+	}
+
+	/*
+	 * Decoder of literal values for the literal setter, null if there is no literal setter
+	 */
+	public LiteralDecoder getLiteralDecoder() {
+		return literalDecoder;
+	}
+
+	/*
+	 * Accessor of the getter and the setter for referenced resource values
+	 */
+	public PropertyAccessor getAccessor() {
+		return accessor;
+	}
+
+	/*
+	 * Accessor of the getter and the literal setter, null if there is no literal setter
+	 */
+	public PropertyAccessor getLiteralAccessor() {
+		return literalAccessor;
+	}
+
+	private static Class<?> resolveElementType(Field f) {
+		Type generic = f.getGenericType();
+		if (generic instanceof ParameterizedType) {
+			Type[] args = ((ParameterizedType) generic).getActualTypeArguments();
+			if (args.length == 1 && args[0] instanceof Class) {
+				return (Class<?>) args[0];
+			}
+		}
+		return null;
+	}
+
+	private static Method findGetter(Class<?> owner, Field f) {
+		if (f.getType().equals(Boolean.TYPE)) {
+			if (f.getName().startsWith("is")) {
+				return findMethod(owner, f.getName());
+			}
+			return findMethod(owner, "is" + capitalize(f.getName()));
+		}
+		return findMethod(owner, "get" + capitalize(f.getName()));
+	}
+
+	private static Method findLiteralSetter(Class<?> owner, Field f) {
+		if (LiteralDecoder.forType(f.getType()) != null) {
+			Method m = findMethod(owner, setterName(f), f.getType());
+			if (m != null) {
+				return m;
+			}
+		}
+		for (Class<?> type : new Class<?>[] { String.class, Integer.TYPE, Float.TYPE, Double.TYPE, Boolean.TYPE }) {
+			Method m = findMethod(owner, setterName(f), type);
+			if (m != null) {
+				return m;
+			}
+		}
+		return null;
+	}
+
+	private static Method findMethod(Class<?> owner, String name, Class<?>... parameterTypes) {
+		try {
+			return owner.getMethod(name, parameterTypes);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	static String setterName(Field f) {
+		return Constants.SET + capitalize(f.getName());
+	}
+
+	private static String capitalize(String name) {
+		return name.substring(0, 1).toUpperCase() + name.substring(1);
+	}
+
+}
@@ -0,0 +1,243 @@
+package org.dualist.ogm.mapping;
+
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jena.datatypes.DatatypeFormatException;
+import org.apache.jena.rdf.model.Literal;
+
+/*
+ * Decodes a literal to the declared Java type of a field and sets it through the accessor.
+ *
+ * Numbers and booleans are taken from the value Jena has already parsed for the literal datatype, and
+ * primitives are set without boxing through the typed setters of PropertyAccessor. Plain literals and
+ * literals of other datatypes are parsed from their lexical form.
+ */
+public enum LiteralDecoder {
+
+	STRING(String.class) {
+		@Override
+		public void set(PropertyAccessor accessor, Object target, Literal literal) throws InvocationTargetException, IllegalAccessException {
+			accessor.set(target, literal.getLexicalForm());
+		}
+	},
+	INT(Integer.TYPE) {
+		@Override
+		public void set(PropertyAccessor accessor, Object target, Literal literal) throws InvocationTargetException, IllegalAccessException {
+			Number n = number(literal);
+			accessor.setInt(target, n != null ? n.intValue() : Integer.parseInt(lexical(literal)));
+		}
+	},
+	LONG(Long.TYPE) {
+		@Override
+		public void set(PropertyAccessor accessor, Object target, Literal literal) throws InvocationTargetException, IllegalAccessException {
+			Number n = number(literal);
+			accessor.setLong(target, n != null ? n.longValue() : Long.parseLong(lexical(literal)));
+		}
+	},
+	FLOAT(Float.TYPE) {
+		@Override
+		public void set(PropertyAccessor accessor, Object target, Literal literal) throws InvocationTargetException, IllegalAccessException {
+			Number n = number(literal);
+			accessor.setFloat(target, n != null ? n.floatValue() : Float.parseFloat(lexical(literal)));
+		}
+	},
+	DOUBLE(Double.TYPE) {
+		@Override
+		public void set(PropertyAccessor accessor, Object target, Literal literal) throws InvocationTargetException, IllegalAccessException {
+			Number n = number(literal);
+			accessor.setDouble(target, n != null ? n.doubleValue() : Double.parseDouble(lexical(literal)));
+		}
+	},
+	BOOLEAN(Boolean.TYPE) {
+		@Override
+		public void set(PropertyAccessor accessor, Object target, Literal literal) throws InvocationTargetException, IllegalAccessException {
+			accessor.setBoolean(target, bool(literal));
+		}
+	},
+	INTEGER_OBJECT(Integer.class) {
+		@Override
+		public void set(PropertyAccessor accessor, Object target, Literal literal) throws InvocationTargetException, IllegalAccessException {
+			Number n = number(literal);
+			accessor.set(target, n instanceof Integer ? n : Integer.valueOf(n != null ? n.intValue() : Integer.parseInt(lexical(literal))));
+		}
+	},
+	LONG_OBJECT(Long.class) {
+		@Override
+		public void set(PropertyAccessor accessor, Object target, Literal literal) throws InvocationTargetException, IllegalAccessException {
+			Number n = number(literal);
+			accessor.set(target, n instanceof Long ? n : Long.valueOf(n != null ? n.longValue() : Long.parseLong(lexical(literal))));
+		}
+	},
+	FLOAT_OBJECT(Float.class) {
+		@Override
+		public void set(PropertyAccessor accessor, Object target, Literal literal) throws InvocationTargetException, IllegalAccessException {
+			Number n = number(literal);
+			accessor.set(target, n instanceof Float ? n : Float.valueOf(n != null ? n.floatValue() : Float.parseFloat(lexical(literal))));
+		}
+	},
+	DOUBLE_OBJECT(Double.class) {
+		@Override
+		public void set(PropertyAccessor accessor, Object target, Literal literal) throws InvocationTargetException, IllegalAccessException {
+			Number n = number(literal);
+			accessor.set(target, n instanceof Double ? n : Double.valueOf(n != null ? n.doubleValue() : Double.parseDouble(lexical(literal))));
+		}
+	},
+	BOOLEAN_OBJECT(Boolean.class) {
+		@Override
+		public void set(PropertyAccessor accessor, Object target, Literal literal) throws InvocationTargetException, IllegalAccessException {
+			accessor.set(target, Boolean.valueOf(bool(literal)));
+		}
+	},
+	BIG_DECIMAL(BigDecimal.class) {
+		@Override
+		public void set(PropertyAccessor accessor, Object target, Literal literal) throws InvocationTargetException, IllegalAccessException {
+			Number n = number(literal);
+			accessor.set(target, n instanceof BigDecimal ? n : new BigDecimal(lexical(literal)));
+		}
+	},
+	BIG_INTEGER(BigInteger.class) {
+		@Override
+		public void set(PropertyAccessor accessor, Object target, Literal literal) throws InvocationTargetException, IllegalAccessException {
+			Number n = number(literal);
+			accessor.set(target, n instanceof BigInteger ? n : new BigInteger(lexical(literal)));
+		}
+	},
+	LOCAL_DATE(LocalDate.class) {
+		@Override
+		public void set(PropertyAccessor accessor, Object target, Literal literal) throws InvocationTargetException, IllegalAccessException {
+			accessor.set(target, LocalDate.from(temporal(literal)));
+		}
+	},
+	LOCAL_TIME(LocalTime.class) {
+		@Override
+		public void set(PropertyAccessor accessor, Object target, Literal literal) throws InvocationTargetException, IllegalAccessException {
+			accessor.set(target, LocalTime.from(DateTimeFormatter.ISO_TIME.parse(lexical(literal))));
+		}
+	},
+	LOCAL_DATE_TIME(LocalDateTime.class) {
+		@Override
+		public void set(PropertyAccessor accessor, Object target, Literal literal) throws InvocationTargetException, IllegalAccessException {
+			accessor.set(target, LocalDateTime.from(temporal(literal)));
+		}
+	},
+	OFFSET_DATE_TIME(OffsetDateTime.class) {
+		@Override
+		public void set(PropertyAccessor accessor, Object target, Literal literal) throws InvocationTargetException, IllegalAccessException {
+			accessor.set(target, offsetDateTime(temporal(literal)));
+		}
+	},
+	ZONED_DATE_TIME(ZonedDateTime.class) {
+		@Override
+		public void set(PropertyAccessor accessor, Object target, Literal literal) throws InvocationTargetException, IllegalAccessException {
+			accessor.set(target, offsetDateTime(temporal(literal)).toZonedDateTime());
+		}
+	},
+	INSTANT(Instant.class) {
+		@Override
+		public void set(PropertyAccessor accessor, Object target, Literal literal) throws InvocationTargetException, IllegalAccessException {
+			accessor.set(target, offsetDateTime(temporal(literal)).toInstant());
+		}
+	};
+
+	private static final Map<Class<?>, LiteralDecoder> decoders = new HashMap<>();
+	static {
+		for (LiteralDecoder d : values()) {
+			decoders.put(d.type, d);
+		}
+	}
+
+	final Class<?> type;
+
+	LiteralDecoder(Class<?> type) {
+		this.type = type;
+	}
+
+	/*
+	 * Java type the literal is decoded to
+	 */
+	public Class<?> getType() {
+		return type;
+	}
+
+	/*
+	 * Decodes the literal and sets it to the target with the accessor
+	 */
+	public abstract void set(PropertyAccessor accessor, Object target, Literal literal) throws InvocationTargetException, IllegalAccessException;
+
+	/*
+	 * Decoder for the Java type, null if the type is not supported
+	 */
+	public static LiteralDecoder forType(Class<?> type) {
+		return decoders.get(type);
+	}
+
+	/*
+	 * The parsed numeric value of a numeric typed literal, null for other literals
+	 */
+	static Number number(Literal literal) {
+		if (literal.getDatatypeURI() == null) {
+			return null;
+		}
+		try {
+			Object value = literal.getValue();
+			return value instanceof Number ? (Number) value : null;
+		} catch (DatatypeFormatException e) {
+			return null;
+		}
+	}
+
+	static boolean bool(Literal literal) {
+		try {
+			Object value = literal.getValue();
+			if (value instanceof Boolean) {
+				return (Boolean) value;
+			}
+		} catch (DatatypeFormatException e) {
+			// not a well formed xsd:boolean, use the lexical form
+		}
+		return Boolean.parseBoolean(lexical(literal));
+	}
+
+	static String lexical(Literal literal) {
+		return literal.getLexicalForm().trim();
+	}
+
+	/*
+	 * Parses xsd:date and xsd:dateTime lexical forms, with or without a timezone
+	 */
+	static TemporalAccessor temporal(Literal literal) {
+		String lex = lexical(literal);
+		if (lex.indexOf('T') > 0) {
+			return DateTimeFormatter.ISO_DATE_TIME.parse(lex);
+		}
+		return DateTimeFormatter.ISO_DATE.parse(lex);
+	}
+
+	/*
+	 * Date-times without a timezone are taken as UTC
+	 */
+	static OffsetDateTime offsetDateTime(TemporalAccessor t) {
+		if (t.isSupported(ChronoField.OFFSET_SECONDS)) {
+			return OffsetDateTime.from(t);
+		}
+		if (t.isSupported(ChronoField.NANO_OF_DAY)) {
+			return LocalDateTime.from(t).atOffset(ZoneOffset.UTC);
+		}
+		return LocalDate.from(t).atStartOfDay().atOffset(ZoneOffset.UTC);
+	}
+
+}
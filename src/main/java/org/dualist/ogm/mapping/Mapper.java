@@ -0,0 +1,25 @@
+package org.dualist.ogm.mapping;
+
+/*
+ * Reflection-free mapper of an @OWLClass annotated POJO class.
+ *
+ * Generated at compile time by the annotation processor of the dualist processor module, as class
+ * <ClassName>_Mapper in the package of the POJO class (nested classes are joined with '_').
+ * When a generated mapper is found on the classpath, Dualist uses it to instantiate the class and to
+ * read and write its mapped fields with direct getter/setter calls, instead of the AccessorFactory.
+ */
+public interface Mapper<T> {
+
+	String SUFFIX = "_Mapper";
+
+	Class<T> getMappedClass();
+
+	T newInstance();
+
+	/*
+	 * Accessor of a mapped field, calling its getter and the setter taking the declared field type.
+	 * Returns null for unknown fields.
+	 */
+	PropertyAccessor getAccessor(String fieldName);
+
+}
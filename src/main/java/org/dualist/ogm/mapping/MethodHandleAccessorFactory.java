@@ -0,0 +1,162 @@
+package org.dualist.ogm.mapping;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.apache.log4j.Logger;
+
+/*
+ * Accessors calling the getters and setters through MethodHandles.
+ *
+ * The handles are resolved and adapted to (Object)Object and (Object,Object)void once per field, so a call is
+ * an invokeExact without access checks or argument array allocation. Falls back to reflection for methods not
+ * accessible through the public lookup.
+ */
+public class MethodHandleAccessorFactory implements AccessorFactory {
+
+	private static final Logger log = Logger
+			.getLogger(MethodHandleAccessorFactory.class.getName());
+
+	static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+	static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+	final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+	@Override
+	public PropertyAccessor createAccessor(Method getter, Method setter) {
+		try {
+			MethodHandle g = getter != null ? lookup.unreflect(getter).asType(GETTER_TYPE) : null;
+			MethodHandle s = null;
+			MethodHandle p = null;
+			if (setter != null) {
+				MethodHandle h = lookup.unreflect(setter);
+				s = h.asType(SETTER_TYPE);
+				Class<?> parameter = setter.getParameterTypes()[0];
+				if (parameter.isPrimitive()) {
+					p = h.asType(MethodType.methodType(void.class, Object.class, parameter));
+				}
+			}
+			return new MethodHandleAccessor(g, s, p);
+		} catch (IllegalAccessException e) {
+			log.debug("No method handle access to " + (getter != null ? getter : setter) + ", using reflection");
+			return new ReflectionAccessorFactory.ReflectionAccessor(getter, setter);
+		}
+	}
+
+	static class MethodHandleAccessor implements PropertyAccessor {
+
+		final MethodHandle getter;
+		final MethodHandle setter;
+		// setter as (Object,<primitive>)void, null if the setter does not take a primitive
+		final MethodHandle primitiveSetter;
+		final Class<?> primitiveType;
+
+		MethodHandleAccessor(MethodHandle getter, MethodHandle setter, MethodHandle primitiveSetter) {
+			this.getter = getter;
+			this.setter = setter;
+			this.primitiveSetter = primitiveSetter;
+			this.primitiveType = primitiveSetter != null ? primitiveSetter.type().parameterType(1) : null;
+		}
+
+		@Override
+		public Object get(Object target) throws InvocationTargetException {
+			try {
+				return (Object) getter.invokeExact(target);
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new InvocationTargetException(t);
+			}
+		}
+
+		@Override
+		public void set(Object target, Object value) throws InvocationTargetException {
+			try {
+				setter.invokeExact(target, value);
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new InvocationTargetException(t);
+			}
+		}
+
+		@Override
+		public void setInt(Object target, int value) throws InvocationTargetException {
+			if (primitiveType != Integer.TYPE) {
+				set(target, value);
+				return;
+			}
+			try {
+				primitiveSetter.invokeExact(target, value);
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new InvocationTargetException(t);
+			}
+		}
+
+		@Override
+		public void setLong(Object target, long value) throws InvocationTargetException {
+			if (primitiveType != Long.TYPE) {
+				set(target, value);
+				return;
+			}
+			try {
+				primitiveSetter.invokeExact(target, value);
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new InvocationTargetException(t);
+			}
+		}
+
+		@Override
+		public void setFloat(Object target, float value) throws InvocationTargetException {
+			if (primitiveType != Float.TYPE) {
+				set(target, value);
+				return;
+			}
+			try {
+				primitiveSetter.invokeExact(target, value);
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new InvocationTargetException(t);
+			}
+		}
+
+		@Override
+		public void setDouble(Object target, double value) throws InvocationTargetException {
+			if (primitiveType != Double.TYPE) {
+				set(target, value);
+				return;
+			}
+			try {
+				primitiveSetter.invokeExact(target, value);
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new InvocationTargetException(t);
+			}
+		}
+
+		@Override
+		public void setBoolean(Object target, boolean value) throws InvocationTargetException {
+			if (primitiveType != Boolean.TYPE) {
+				set(target, value);
+				return;
+			}
+			try {
+				primitiveSetter.invokeExact(target, value);
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new InvocationTargetException(t);
+			}
+		}
+	}
+
+}
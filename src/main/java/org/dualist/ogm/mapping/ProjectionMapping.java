@@ -0,0 +1,313 @@
+package org.dualist.ogm.mapping;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.log4j.Logger;
+import org.dualist.ogm.pojo.URI;
+
+/*
+ * Maps the variables of a SPARQL SELECT result row to a DTO, by name.
+ *
+ * A DTO class with a no-arg constructor is filled through its setters (setName for ?name) and public fields.
+ * Otherwise it is created with its constructor taking all the values, which is the canonical constructor of a
+ * record, or the only public constructor of a class compiled with -parameters. The columns and their converters
+ * are resolved once per class.
+ *
+ * Literals are decoded to the column type as in the POJO fields, see LiteralDecoder. Resources are mapped to
+ * String and org.dualist.ogm.pojo.URI columns by URI, and RDFNode columns get the node as is. Variables without a
+ * value leave the column unset, or null or zero for constructor parameters.
+ */
+public class ProjectionMapping<R> {
+
+	private static final Logger log = Logger
+			.getLogger(ProjectionMapping.class.getName());
+
+	final Class<R> type;
+	final Column[] columns;
+	// constructor taking the column values, null if the columns are set to a new instance
+	final Constructor<R> constructor;
+	final Constructor<R> noArgConstructor;
+	// initial constructor arguments, zero for primitives
+	final Object[] defaults;
+
+	/*
+	 * Variable of the row and the accessor setting its value to the instance, or to the constructor arguments
+	 */
+	static class Column {
+		final String name;
+		final Class<?> type;
+		final PropertyAccessor accessor;
+		final LiteralDecoder decoder;
+
+		Column(String name, Class<?> type, PropertyAccessor accessor) {
+			this.name = name;
+			this.type = type;
+			this.accessor = accessor;
+			this.decoder = LiteralDecoder.forType(type);
+		}
+
+		void set(Object target, RDFNode node) throws InvocationTargetException, IllegalAccessException {
+			if (node.isLiteral()) {
+				if (decoder != null) {
+					decoder.set(accessor, target, node.asLiteral());
+				} else if (type.isInstance(node)) {
+					accessor.set(target, node);
+				} else if (type == Object.class) {
+					accessor.set(target, node.asLiteral().getValue());
+				}
+			} else if (type == String.class) {
+				accessor.set(target, node.isURIResource() ? node.asResource().getURI() : node.toString());
+			} else if (type == URI.class && node.isURIResource()) {
+				accessor.set(target, new URI(node.asResource().getURI()));
+			} else if (type.isInstance(node)) {
+				accessor.set(target, node);
+			}
+		}
+	}
+
+	/*
+	 * Sets a constructor argument, the target is the argument array
+	 */
+	static class ArgumentAccessor implements PropertyAccessor {
+		final int index;
+
+		ArgumentAccessor(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public Object get(Object target) {
+			return ((Object[]) target)[index];
+		}
+
+		@Override
+		public void set(Object target, Object value) {
+			((Object[]) target)[index] = value;
+		}
+	}
+
+	/*
+	 * Sets a public field
+	 */
+	static class FieldAccessor implements PropertyAccessor {
+		final Field field;
+
+		FieldAccessor(Field field) {
+			this.field = field;
+		}
+
+		@Override
+		public Object get(Object target) throws IllegalAccessException {
+			return field.get(target);
+		}
+
+		@Override
+		public void set(Object target, Object value) throws IllegalAccessException {
+			field.set(target, value);
+		}
+	}
+
+	public ProjectionMapping(Class<R> type, AccessorFactory accessors) {
+		this.type = type;
+		this.noArgConstructor = findNoArgConstructor(type);
+		List<Column> cs = new ArrayList<>();
+		if (noArgConstructor != null) {
+			this.constructor = null;
+			Set<String> names = new HashSet<>();
+			for (Method m : type.getMethods()) {
+				if (m.getName().length() > 3 && m.getName().startsWith("set") && m.getParameterCount() == 1 && !Modifier.isStatic(m.getModifiers())) {
+					String name = Character.toLowerCase(m.getName().charAt(3)) + m.getName().substring(4);
+					if (names.add(name)) {
+						cs.add(new Column(name, m.getParameterTypes()[0], accessors.createAccessor(null, m)));
+					}
+				}
+			}
+			for (Field f : type.getFields()) {
+				if (!Modifier.isStatic(f.getModifiers()) && !Modifier.isFinal(f.getModifiers()) && names.add(f.getName())) {
+					cs.add(new Column(f.getName(), f.getType(), new FieldAccessor(f)));
+				}
+			}
+			this.defaults = null;
+		} else {
+			this.constructor = findValueConstructor(type);
+			if (constructor == null) {
+				throw new IllegalArgumentException("No no-arg, record or -parameters constructor in " + type.getName());
+			}
+			String[] names = recordComponentNames(type);
+			Parameter[] parameters = constructor.getParameters();
+			defaults = new Object[parameters.length];
+			for (int i = 0; i < parameters.length; i++) {
+				Class<?> t = parameters[i].getType();
+				cs.add(new Column(names != null ? names[i] : parameters[i].getName(), t, new ArgumentAccessor(i)));
+				defaults[i] = defaultValue(t);
+			}
+		}
+		for (Column c : cs) {
+			if (c.decoder == null && c.type != String.class && c.type != URI.class && c.type != Object.class && !RDFNode.class.isAssignableFrom(c.type)) {
+				log.warn("Column " + c.name + " of " + type.getName() + " has unsupported type " + c.type.getName() + ", only literal values of the type are mapped");
+			}
+		}
+		columns = cs.toArray(new Column[cs.size()]);
+	}
+
+	public Class<R> getType() {
+		return type;
+	}
+
+	/*
+	 * Names of the mapped variables
+	 */
+	public List<String> getColumnNames() {
+		List<String> names = new ArrayList<>(columns.length);
+		for (Column c : columns) {
+			names.add(c.name);
+		}
+		return names;
+	}
+
+	/*
+	 * New DTO of the row
+	 */
+	public R map(QuerySolution row) throws ReflectiveOperationException {
+		Object target = constructor != null ? defaults.clone() : noArgConstructor.newInstance();
+		for (Column c : columns) {
+			RDFNode node = row.get(c.name);
+			if (node == null) {
+				continue;
+			}
+			try {
+				c.set(target, node);
+			} catch (RuntimeException e) {
+				log.error("Could not map ?" + c.name + " = " + node + " to " + c.type.getName() + " of " + type.getName(), e);
+			}
+		}
+		if (constructor != null) {
+			return constructor.newInstance((Object[]) target);
+		}
+		return type.cast(target);
+	}
+
+	static <R> Constructor<R> findNoArgConstructor(Class<R> type) {
+		try {
+			return type.getConstructor();
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	/*
+	 * The canonical constructor of a record, or the only public constructor if its parameter names are compiled in
+	 */
+	@SuppressWarnings("unchecked")
+	static <R> Constructor<R> findValueConstructor(Class<R> type) {
+		Class<?>[] componentTypes = recordComponentTypes(type);
+		try {
+			if (componentTypes != null) {
+				Constructor<R> c = type.getDeclaredConstructor(componentTypes);
+				c.setAccessible(true);
+				return c;
+			}
+		} catch (NoSuchMethodException | RuntimeException e) {
+			log.error("No canonical constructor in record " + type.getName(), e);
+			return null;
+		}
+		Constructor<?>[] cs = type.getConstructors();
+		if (cs.length == 1 && cs[0].getParameterCount() > 0 && cs[0].getParameters()[0].isNamePresent()) {
+			return (Constructor<R>) cs[0];
+		}
+		return null;
+	}
+
+	/*
+	 * Record components through reflection, records are not available at the source level of the project.
+	 * Null if the class is not a record.
+	 */
+	static Object[] recordComponents(Class<?> type) {
+		try {
+			Method isRecord = Class.class.getMethod("isRecord");
+			if (!(Boolean) isRecord.invoke(type)) {
+				return null;
+			}
+			return (Object[]) Class.class.getMethod("getRecordComponents").invoke(type);
+		} catch (NoSuchMethodException e) {
+			return null;
+		} catch (ReflectiveOperationException e) {
+			log.error("Could not read the record components of " + type.getName(), e);
+			return null;
+		}
+	}
+
+	static String[] recordComponentNames(Class<?> type) {
+		Object[] components = recordComponents(type);
+		if (components == null) {
+			return null;
+		}
+		try {
+			String[] names = new String[components.length];
+			for (int i = 0; i < components.length; i++) {
+				names[i] = (String) components[i].getClass().getMethod("getName").invoke(components[i]);
+			}
+			return names;
+		} catch (ReflectiveOperationException e) {
+			log.error("Could not read the record components of " + type.getName(), e);
+			return null;
+		}
+	}
+
+	static Class<?>[] recordComponentTypes(Class<?> type) {
+		Object[] components = recordComponents(type);
+		if (components == null) {
+			return null;
+		}
+		try {
+			Class<?>[] types = new Class<?>[components.length];
+			for (int i = 0; i < components.length; i++) {
+				types[i] = (Class<?>) components[i].getClass().getMethod("getType").invoke(components[i]);
+			}
+			return types;
+		} catch (ReflectiveOperationException e) {
+			log.error("Could not read the record components of " + type.getName(), e);
+			return null;
+		}
+	}
+
+	static Object defaultValue(Class<?> type) {
+		if (!type.isPrimitive()) {
+			return null;
+		}
+		if (type == Boolean.TYPE) {
+			return Boolean.FALSE;
+		}
+		if (type == Character.TYPE) {
+			return Character.valueOf((char) 0);
+		}
+		if (type == Long.TYPE) {
+			return 0L;
+		}
+		if (type == Float.TYPE) {
+			return 0f;
+		}
+		if (type == Double.TYPE) {
+			return 0d;
+		}
+		if (type == Byte.TYPE) {
+			return (byte) 0;
+		}
+		if (type == Short.TYPE) {
+			return (short) 0;
+		}
+		return 0;
+	}
+
+}
@@ -0,0 +1,41 @@
+package org.dualist.ogm.mapping;
+
+import java.lang.reflect.InvocationTargetException;
+
+/*
+ * Reads and writes a mapped field of a POJO through its getter and setter.
+ *
+ * Accessors are created once per field by an AccessorFactory and cached in the FieldBinding.
+ * As with reflective calls, exceptions thrown by the getter or setter are wrapped in InvocationTargetException.
+ */
+public interface PropertyAccessor {
+
+	Object get(Object target) throws InvocationTargetException, IllegalAccessException;
+
+	void set(Object target, Object value) throws InvocationTargetException, IllegalAccessException;
+
+	/*
+	 * Typed setters for primitive values. Accessors of primitive setters override these to avoid boxing,
+	 * the defaults box the value.
+	 */
+	default void setInt(Object target, int value) throws InvocationTargetException, IllegalAccessException {
+		set(target, value);
+	}
+
+	default void setLong(Object target, long value) throws InvocationTargetException, IllegalAccessException {
+		set(target, value);
+	}
+
+	default void setFloat(Object target, float value) throws InvocationTargetException, IllegalAccessException {
+		set(target, value);
+	}
+
+	default void setDouble(Object target, double value) throws InvocationTargetException, IllegalAccessException {
+		set(target, value);
+	}
+
+	default void setBoolean(Object target, boolean value) throws InvocationTargetException, IllegalAccessException {
+		set(target, value);
+	}
+
+}
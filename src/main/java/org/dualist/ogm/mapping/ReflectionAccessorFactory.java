@@ -0,0 +1,37 @@
+package org.dualist.ogm.mapping;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/*
+ * Accessors calling the getters and setters with Method.invoke.
+ */
+public class ReflectionAccessorFactory implements AccessorFactory {
+
+	@Override
+	public PropertyAccessor createAccessor(Method getter, Method setter) {
+		return new ReflectionAccessor(getter, setter);
+	}
+
+	static class ReflectionAccessor implements PropertyAccessor {
+
+		final Method getter;
+		final Method setter;
+
+		ReflectionAccessor(Method getter, Method setter) {
+			this.getter = getter;
+			this.setter = setter;
+		}
+
+		@Override
+		public Object get(Object target) throws InvocationTargetException, IllegalAccessException {
+			return getter.invoke(target);
+		}
+
+		@Override
+		public void set(Object target, Object value) throws InvocationTargetException, IllegalAccessException {
+			setter.invoke(target, value);
+		}
+	}
+
+}
@@ -20,7 +20,10 @@ public class GraphResource {
 
 	boolean populateProperties = false;	
 	
-	boolean isReference = false;
+	volatile boolean isReference = false;
+	
+	// mapped field values when populated or written, see Dualist.setDirtyTracking
+	Object[] snapshot = null;
 	
 	Point geo = null;
 	
@@ -181,6 +184,23 @@ public class GraphResource {
 		this.isReference = isReference;
 	}
 	
+	public Object[] getSnapshot() {
+		return snapshot;
+	}
+
+	public void setSnapshot(Object[] snapshot) {
+		this.snapshot = snapshot;
+	}
+	
+	/*
+	 * Populates a reference object from the graph, in place. Does nothing if the object is already populated.
+	 */
+	public GraphResource resolve() {
+		if( isReference && graph != null && uri != null)
+			graph.resolve(this);
+		return this;
+	}
+	
 	public class Attribute {
 		  public String name;
 		  public String uri;
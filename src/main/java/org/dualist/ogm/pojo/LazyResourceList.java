@@ -0,0 +1,63 @@
+package org.dualist.ogm.pojo;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * List of referenced resources populated on access, used for List fields in the lazy loading mode of Dualist.
+ *
+ * The list holds reference objects (see GraphResource.isReference()), which are resolved from the graph when
+ * they are read with get() or iterated. size() and references() do not populate anything.
+ */
+public class LazyResourceList<T extends GraphResource> extends AbstractList<T> {
+
+	final List<T> elements = new ArrayList<>();
+
+	@Override
+	public T get(int index) {
+		T element = elements.get(index);
+		if( element != null && element.isReference())
+			element.resolve();
+		return element;
+	}
+
+	@Override
+	public int size() {
+		return elements.size();
+	}
+
+	@Override
+	public T set(int index, T element) {
+		return elements.set(index, element);
+	}
+
+	@Override
+	public void add(int index, T element) {
+		elements.add(index, element);
+		modCount++;
+	}
+
+	@Override
+	public T remove(int index) {
+		modCount++;
+		return elements.remove(index);
+	}
+
+	/*
+	 * True if the element has been populated
+	 */
+	public boolean isResolved(int index) {
+		T element = elements.get(index);
+		return element == null || !element.isReference();
+	}
+
+	/*
+	 * The elements as they are, without resolving the references
+	 */
+	public List<T> references() {
+		return Collections.unmodifiableList(elements);
+	}
+
+}
@@ -0,0 +1,180 @@
+package org.dualist.ogm.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.Syntax;
+import org.apache.jena.riot.system.PrefixMapFactory;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.expr.E_GreaterThan;
+import org.apache.jena.sparql.expr.E_Str;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprVar;
+import org.apache.jena.sparql.expr.NodeValue;
+import org.apache.jena.sparql.syntax.ElementFilter;
+import org.apache.jena.sparql.syntax.ElementGroup;
+import org.apache.jena.sparql.syntax.ElementSubQuery;
+import org.apache.jena.sparql.syntax.syntaxtransform.QueryTransformOps;
+import org.apache.jena.sparql.util.NodeFactoryExtra;
+
+/*
+ * Cache of parsed SPARQL queries by query text.
+ *
+ * Queries are parsed once with the prefixes of the model, instead of prepending the prefix declarations to the
+ * text and parsing it on every call. Per-call values, such as the ?resource of an @OWLProperty query, are bound
+ * by substituting the variables in the parsed query with bind(), so the template text stays the same.
+ *
+ * The cached queries depend on the prefixes of the model at parse time. prefixesChanged() tells when they must
+ * be reset. Cached Query objects are shared and must not be modified.
+ */
+public class QueryCache {
+
+	public static final int DEFAULT_SIZE = 1000;
+
+	final PrefixMapping source;
+	volatile PrefixMapping prefixes;
+	final Map<String, Query> queries;
+
+	final LongAdder hits = new LongAdder();
+	final LongAdder misses = new LongAdder();
+
+	public QueryCache(PrefixMapping source) {
+		this(source, DEFAULT_SIZE);
+	}
+
+	public QueryCache(PrefixMapping source, final int maximumSize) {
+		this.source = source;
+		this.prefixes = snapshot(source);
+		this.queries = Collections.synchronizedMap(new LinkedHashMap<String, Query>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Query> eldest) {
+				return size() > maximumSize;
+			}
+		});
+	}
+
+	/*
+	 * The parsed query. Throws QueryParseException (a QueryException) if the text is not valid SPARQL.
+	 */
+	public Query get(String sparql) {
+		Query query = queries.get(sparql);
+		if (query != null) {
+			hits.increment();
+			return query;
+		}
+		misses.increment();
+		query = new Query();
+		// the parser adds the PREFIX declarations of the text to the mapping, do not share it
+		query.setPrefixMapping(PrefixMapping.Factory.create().setNsPrefixes(prefixes));
+		QueryFactory.parse(query, sparql, null, Syntax.syntaxSPARQL_11);
+		queries.put(sparql, query);
+		return query;
+	}
+
+	/*
+	 * True if the prefixes of the model differ from the ones the cached queries were parsed with
+	 */
+	public boolean prefixesChanged() {
+		return !source.samePrefixMappingAs(prefixes);
+	}
+
+	/*
+	 * Drops the cached queries and takes the current prefixes of the model
+	 */
+	public void reset() {
+		prefixes = snapshot(source);
+		queries.clear();
+	}
+
+	/*
+	 * Prefixes the cached queries are parsed with
+	 */
+	public PrefixMapping getPrefixes() {
+		return prefixes;
+	}
+
+	/*
+	 * Parses a single RDF term, such as <uri>, prefix:name, "literal" or 5, with the prefixes of the model
+	 */
+	public Node parseNode(String term) {
+		return NodeFactoryExtra.parseNode(term, PrefixMapFactory.create(prefixes));
+	}
+
+	public int size() {
+		return queries.size();
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/*
+	 * Copy of the query with the variable replaced by the node
+	 */
+	public static Query bind(Query query, String var, Node value) {
+		Map<Var, Node> binding = new HashMap<>();
+		binding.put(Var.alloc(var), value);
+		return QueryTransformOps.transform(query, binding);
+	}
+
+	/*
+	 * Copy of the query with a VALUES block binding the variable to each of the nodes
+	 */
+	public static Query values(Query query, String var, Collection<Node> values) {
+		List<Binding> rows = new ArrayList<>(values.size());
+		Var v = Var.alloc(var);
+		for (Node value : values) {
+			rows.add(BindingFactory.binding(v, value));
+		}
+		// cloneQuery() would print and parse the query again
+		Query copy = QueryTransformOps.transform(query, Collections.<Var, Node>emptyMap());
+		copy.setValuesDataBlock(Collections.singletonList(v), rows);
+		return copy;
+	}
+
+	/*
+	 * Query of the distinct values of the variable greater than the value after, by string value, ordered by their
+	 * string value and limited to the limit. The query is a subquery of the result, so its own modifiers still apply,
+	 * and it is not modified. After may be null for the first page.
+	 */
+	public static Query page(Query query, String var, String after, long limit) {
+		Expr str = new E_Str(new ExprVar(var));
+		ElementGroup where = new ElementGroup();
+		where.addElement(new ElementSubQuery(query));
+		if (after != null) {
+			where.addElementFilter(new ElementFilter(new E_GreaterThan(str, NodeValue.makeString(after))));
+		}
+		Query page = new Query();
+		page.setQuerySelectType();
+		page.setPrefixMapping(query.getPrefixMapping());
+		page.setDistinct(true);
+		page.addResultVar(var);
+		page.setQueryPattern(where);
+		page.addOrderBy(str, Query.ORDER_ASCENDING);
+		page.setLimit(limit);
+		return page;
+	}
+
+	private static PrefixMapping snapshot(PrefixMapping source) {
+		return PrefixMapping.Factory.create().setNsPrefixes(source).lock();
+	}
+
+}
@@ -0,0 +1,86 @@
+package org.dualist.ogm.query;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Cache of query results, the URIs of the ?result variable, by the exact query text.
+ *
+ * The text is not normalized: collapsing whitespace would also change the literals and IRIs of the query, so
+ * queries differing only in formatting use separate entries.
+ *
+ * Each result is stored with the graph generation it was computed at, and is only returned for the same
+ * generation, so any change of the graph makes the earlier results stale. Stale entries are dropped when they
+ * are looked up, or by LRU order when the cache is full.
+ */
+public class QueryResultCache {
+
+	final Map<String, Entry> entries;
+
+	final LongAdder hits = new LongAdder();
+	final LongAdder misses = new LongAdder();
+
+	public QueryResultCache(final int maximumSize) {
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("maximumSize must be positive: " + maximumSize);
+		}
+		this.entries = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > maximumSize;
+			}
+		});
+	}
+
+	/*
+	 * The result URIs of the query at the graph generation, null if not cached
+	 */
+	public List<String> get(String key, long generation) {
+		Entry e = entries.get(key);
+		if (e != null && e.generation == generation) {
+			hits.increment();
+			return e.uris;
+		}
+		if (e != null) {
+			entries.remove(key);
+		}
+		misses.increment();
+		return null;
+	}
+
+	public void put(String key, long generation, List<String> uris) {
+		entries.put(key, new Entry(generation, Collections.unmodifiableList(uris)));
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	static class Entry {
+		final long generation;
+		final List<String> uris;
+
+		Entry(long generation, List<String> uris) {
+			this.generation = generation;
+			this.uris = uris;
+		}
+	}
+
+}
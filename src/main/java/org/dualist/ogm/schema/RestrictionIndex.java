@@ -0,0 +1,132 @@
+package org.dualist.ogm.schema;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.jena.ontology.OntClass;
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.ontology.OntProperty;
+import org.apache.jena.ontology.Restriction;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.vocabulary.OWL2;
+import org.dualist.ogm.pojo.GraphResource.ATTRIBUTE_RESTRICTION;
+
+/*
+ * Cardinality restrictions of the properties of the ontology, read from the schema once per property.
+ *
+ * A restriction applies to the classes which are subclasses of it, and to their subclasses. The restriction of
+ * a property for a class is the last one read from the reasoner which applies to the class or, if none applies,
+ * the last one of the property, as Dualist has always reported them for the Attribute list.
+ *
+ * Like TypeHierarchy, the index is a snapshot of the schema at the schema generation it was built at.
+ */
+public class RestrictionIndex {
+
+	/*
+	 * owl:minQualifiedCardinality or owl:maxQualifiedCardinality restriction of a property
+	 */
+	public static class Cardinality {
+		final ATTRIBUTE_RESTRICTION kind;
+		final int value;
+		// classes restricted, by class number of the TypeHierarchy
+		final BitSet classes;
+
+		Cardinality(ATTRIBUTE_RESTRICTION kind, int value, BitSet classes) {
+			this.kind = kind;
+			this.value = value;
+			this.classes = classes;
+		}
+
+		public ATTRIBUTE_RESTRICTION getKind() {
+			return kind;
+		}
+
+		public int getValue() {
+			return value;
+		}
+
+		public String toString() {
+			return kind + "=" + value;
+		}
+	}
+
+	static final Cardinality[] NONE = new Cardinality[0];
+
+	final OntModel model;
+	final TypeHierarchy hierarchy;
+
+	// property URI -> restrictions in the order of the reasoner
+	final Map<String, Cardinality[]> restrictions = new ConcurrentHashMap<>();
+
+	public RestrictionIndex(OntModel model, TypeHierarchy hierarchy) {
+		this.model = model;
+		this.hierarchy = hierarchy;
+	}
+
+	public long getGeneration() {
+		return hierarchy.getGeneration();
+	}
+
+	/*
+	 * The restriction of the property for the class, null if there is none. The class may be null.
+	 */
+	public Cardinality get(String propertyUri, String classUri) {
+		Cardinality[] cs = restrictions.computeIfAbsent(propertyUri, this::read);
+		if (cs.length == 0) {
+			return null;
+		}
+		int id = hierarchy.id(classUri);
+		if (id >= 0) {
+			BitSet supers = hierarchy.getSuperClasses(id);
+			for (int i = cs.length - 1; i >= 0; i--) {
+				if (cs[i].classes.get(id) || cs[i].classes.intersects(supers)) {
+					return cs[i];
+				}
+			}
+		}
+		return cs[cs.length - 1];
+	}
+
+	/*
+	 * Reads the restrictions of the property from the model
+	 */
+	Cardinality[] read(String propertyUri) {
+		OntProperty p = model.getOntProperty(propertyUri);
+		// properties not declared in the ontology have no restrictions
+		if (p == null) {
+			return NONE;
+		}
+		List<Cardinality> cs = new ArrayList<>();
+		Iterator<Restriction> i = p.listReferringRestrictions();
+		while (i.hasNext()) {
+			Restriction r = i.next();
+			ATTRIBUTE_RESTRICTION kind;
+			RDFNode value = r.getPropertyValue(OWL2.minQualifiedCardinality);
+			if (value != null) {
+				kind = ATTRIBUTE_RESTRICTION.MIN_CARDINALITY;
+			} else {
+				value = r.getPropertyValue(OWL2.maxQualifiedCardinality);
+				kind = ATTRIBUTE_RESTRICTION.MAX_CARDINALITY;
+			}
+			if (value == null) {
+				continue;
+			}
+			BitSet classes = new BitSet();
+			Iterator<OntClass> si = r.listSubClasses();
+			while (si.hasNext()) {
+				OntClass c = si.next();
+				int id = c.isURIResource() ? hierarchy.id(c.getURI()) : -1;
+				if (id >= 0) {
+					classes.set(id);
+				}
+			}
+			cs.add(new Cardinality(kind, value.asLiteral().getInt(), classes));
+		}
+		return cs.isEmpty() ? NONE : cs.toArray(new Cardinality[cs.size()]);
+	}
+
+}
@@ -0,0 +1,254 @@
+package org.dualist.ogm.schema;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.jena.ontology.OntClass;
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+/*
+ * Index of the named classes of the ontology and their superclasses, read once from the model.
+ *
+ * The classes are numbered, and the superclasses of each class are stored as a bitset of the class numbers, so
+ * subclass tests and the selection of a type out of the types of a resource do not call the reasoner. Only the
+ * direct superclasses are read from the model, and the transitive closure is computed here, so the index is the
+ * same with or without inference. A class is its own superclass. A leaf class is a class which is not a direct
+ * superclass of another class.
+ *
+ * The index is a snapshot of the schema at the schema generation it was built at, see
+ * CacheInvalidationListener.getSchemaGeneration(). Dualist builds a new one when the schema changes.
+ */
+public class TypeHierarchy {
+
+	final long generation;
+
+	final Map<String, Integer> ids = new HashMap<>();
+	final String[] uris;
+	// superclasses of each class, including the class itself
+	final BitSet[] superClasses;
+	// number of superclasses of each class
+	final int[] depths;
+	final BitSet leaves = new BitSet();
+
+	// class URI -> registered Java class of the class or its nearest superclass, see resolve
+	final Map<String, Class<?>> resolved = new ConcurrentHashMap<>();
+
+	public TypeHierarchy(OntModel model, long generation) {
+		this.generation = generation;
+
+		List<OntClass> classes = new ArrayList<>();
+		ExtendedIterator<OntClass> it = model.listClasses();
+		try {
+			while (it.hasNext()) {
+				OntClass c = it.next();
+				if (c.isURIResource() && !ids.containsKey(c.getURI())) {
+					ids.put(c.getURI(), classes.size());
+					classes.add(c);
+				}
+			}
+		} finally {
+			it.close();
+		}
+
+		int n = classes.size();
+		uris = new String[n];
+		superClasses = new BitSet[n];
+		depths = new int[n];
+		// direct superclasses, which do not depend on the reasoner computing the transitive closure
+		BitSet[] direct = new BitSet[n];
+		BitSet hasSubClasses = new BitSet();
+		for (int i = 0; i < n; i++) {
+			OntClass c = classes.get(i);
+			uris[i] = c.getURI();
+			direct[i] = new BitSet();
+			Iterator<OntClass> si = c.listSuperClasses(true);
+			while (si.hasNext()) {
+				OntClass s = si.next();
+				Integer id = s.isURIResource() ? ids.get(s.getURI()) : null;
+				if (id != null && id != i) {
+					direct[i].set(id);
+					hasSubClasses.set(id);
+				}
+			}
+			superClasses[i] = (BitSet) direct[i].clone();
+			superClasses[i].set(i);
+		}
+
+		// transitive closure: each class takes the superclasses of its direct superclasses until none changes
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int i = 0; i < n; i++) {
+				BitSet supers = superClasses[i];
+				int before = supers.cardinality();
+				for (int s = direct[i].nextSetBit(0); s >= 0; s = direct[i].nextSetBit(s + 1)) {
+					supers.or(superClasses[s]);
+				}
+				changed |= supers.cardinality() != before;
+			}
+		}
+
+		for (int i = 0; i < n; i++) {
+			depths[i] = superClasses[i].cardinality() - 1;
+			if (!hasSubClasses.get(i)) {
+				leaves.set(i);
+			}
+		}
+	}
+
+	/*
+	 * Schema generation the index was built at
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	public int size() {
+		return uris.length;
+	}
+
+	/*
+	 * Number of the class, -1 if the class is not in the index
+	 */
+	public int id(String uri) {
+		Integer id = uri != null ? ids.get(uri) : null;
+		return id != null ? id : -1;
+	}
+
+	public String uri(int id) {
+		return uris[id];
+	}
+
+	/*
+	 * Superclasses of the class, by class number. Must not be modified.
+	 */
+	public BitSet getSuperClasses(int id) {
+		return superClasses[id];
+	}
+
+	public boolean isLeaf(int id) {
+		return leaves.get(id);
+	}
+
+	public boolean isSubClassOf(String child, String parent) {
+		int c = id(child);
+		int p = id(parent);
+		return c >= 0 && p >= 0 && superClasses[c].get(p);
+	}
+
+	/*
+	 * The most specific superclass of the class in the namespace, null if there is none
+	 */
+	public String getSuperClass(String child, String namespace) {
+		int c = id(child);
+		if (c < 0) {
+			return null;
+		}
+		int best = -1;
+		BitSet supers = superClasses[c];
+		for (int s = supers.nextSetBit(0); s >= 0; s = supers.nextSetBit(s + 1)) {
+			if (s != c && (namespace == null || uris[s].startsWith(namespace)) && (best < 0 || isMoreSpecific(s, best))) {
+				best = s;
+			}
+		}
+		return best >= 0 ? uris[best] : null;
+	}
+
+	/*
+	 * The first leaf class of the types, null if none of them is a leaf
+	 */
+	public String getLeafType(List<String> types) {
+		for (String t : types) {
+			int id = id(t);
+			if (id >= 0 && leaves.get(id)) {
+				return t;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * The most specific of the types of a resource: a leaf class if there is one, otherwise the class with the most
+	 * superclasses. The first one wins a tie. Types which are not in the index are chosen only if none of the types is.
+	 */
+	public String getMostSpecificType(List<String> types) {
+		if (types.size() == 1) {
+			return types.get(0);
+		}
+		int best = -1;
+		for (String t : types) {
+			int id = id(t);
+			if (id >= 0 && (best < 0 || isPreferred(id, best))) {
+				best = id;
+			}
+		}
+		if (best >= 0) {
+			return uris[best];
+		}
+		return types.isEmpty() ? null : types.get(0);
+	}
+
+	private boolean isPreferred(int a, int b) {
+		boolean leaf = leaves.get(a);
+		if (leaf != leaves.get(b)) {
+			return leaf;
+		}
+		return depths[a] > depths[b];
+	}
+
+	/*
+	 * The Java class registered for the class, or for its most specific superclass having one, at any depth.
+	 * Null if there is none. The results are kept until clearResolved() is called.
+	 */
+	public Class<?> resolve(String uri, Map<String, ? extends Class<?>> registered) {
+		Class<?> c = resolved.get(uri);
+		if (c != null) {
+			return c;
+		}
+		c = registered.get(uri);
+		int id = id(uri);
+		if (c == null && id >= 0) {
+			int best = -1;
+			BitSet supers = superClasses[id];
+			for (int s = supers.nextSetBit(0); s >= 0; s = supers.nextSetBit(s + 1)) {
+				if (s != id && registered.containsKey(uris[s]) && (best < 0 || isMoreSpecific(s, best))) {
+					best = s;
+				}
+			}
+			if (best >= 0) {
+				c = registered.get(uris[best]);
+			}
+		}
+		if (c != null) {
+			resolved.put(uri, c);
+		}
+		return c;
+	}
+
+	/*
+	 * Drops the resolved Java classes, after the registered classes change
+	 */
+	public void clearResolved() {
+		resolved.clear();
+	}
+
+	/*
+	 * True if a is a subclass of b, or has more superclasses if they are not related
+	 */
+	private boolean isMoreSpecific(int a, int b) {
+		if (superClasses[a].get(b)) {
+			return true;
+		}
+		if (superClasses[b].get(a)) {
+			return false;
+		}
+		return depths[a] > depths[b];
+	}
+
+}
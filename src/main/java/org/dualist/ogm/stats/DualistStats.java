@@ -0,0 +1,244 @@
+package org.dualist.ogm.stats;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.dualist.ogm.cache.ObjectCache;
+import org.dualist.ogm.query.QueryResultCache;
+
+/*
+ * Object cache and population statistics of a Dualist instance.
+ *
+ * Hits and misses are counted per entry point. A population is a top-level populateFromGraph call, such as a
+ * cache miss in get(); its fan-out is the number of resources materialized by it, including the referenced
+ * resources populated recursively, and its time is the wall time of the top-level call.
+ */
+public class DualistStats implements DualistStatsMBean {
+
+	public enum EntryPoint {
+		GET, QUERY, GET_ALL, INSTANTIATE
+	}
+
+	final LongAdder[] hits = new LongAdder[EntryPoint.values().length];
+	final LongAdder[] misses = new LongAdder[EntryPoint.values().length];
+
+	final LongAdder invalidations = new LongAdder();
+	final LongAdder populatedResources = new LongAdder();
+	final LongAdder populations = new LongAdder();
+	final LongAdder populateNanos = new LongAdder();
+	final LongAccumulator maxFanOut = new LongAccumulator(Long::max, 0);
+
+	// per thread: nesting depth, resources populated, start time of the top-level population
+	final ThreadLocal<long[]> population = ThreadLocal.withInitial(() -> new long[3]);
+
+	// cache of the Dualist instance, for its size and evictions
+	volatile ObjectCache cache;
+	volatile QueryResultCache queryResultCache;
+
+	public DualistStats() {
+		for (int i = 0; i < hits.length; i++) {
+			hits[i] = new LongAdder();
+			misses[i] = new LongAdder();
+		}
+	}
+
+	public void setCache(ObjectCache cache) {
+		this.cache = cache;
+	}
+
+	public void setQueryResultCache(QueryResultCache queryResultCache) {
+		this.queryResultCache = queryResultCache;
+	}
+
+	public void hit(EntryPoint e) {
+		hits[e.ordinal()].increment();
+	}
+
+	public void miss(EntryPoint e) {
+		misses[e.ordinal()].increment();
+	}
+
+	public void invalidated(int count) {
+		invalidations.add(count);
+	}
+
+	/*
+	 * Called at the start of each populateFromGraph call, also the nested ones
+	 */
+	public void populateStarted() {
+		long[] p = population.get();
+		if (p[0]++ == 0) {
+			p[1] = 0;
+			p[2] = System.nanoTime();
+		}
+		p[1]++;
+	}
+
+	public void populateFinished() {
+		long[] p = population.get();
+		if (--p[0] == 0) {
+			populateNanos.add(System.nanoTime() - p[2]);
+			populatedResources.add(p[1]);
+			populations.increment();
+			maxFanOut.accumulate(p[1]);
+		}
+	}
+
+	public long getHits(EntryPoint e) {
+		return hits[e.ordinal()].sum();
+	}
+
+	public long getMisses(EntryPoint e) {
+		return misses[e.ordinal()].sum();
+	}
+
+	@Override
+	public long getGetHits() {
+		return getHits(EntryPoint.GET);
+	}
+
+	@Override
+	public long getGetMisses() {
+		return getMisses(EntryPoint.GET);
+	}
+
+	@Override
+	public long getQueryHits() {
+		return getHits(EntryPoint.QUERY);
+	}
+
+	@Override
+	public long getQueryMisses() {
+		return getMisses(EntryPoint.QUERY);
+	}
+
+	@Override
+	public long getGetAllHits() {
+		return getHits(EntryPoint.GET_ALL);
+	}
+
+	@Override
+	public long getGetAllMisses() {
+		return getMisses(EntryPoint.GET_ALL);
+	}
+
+	@Override
+	public long getInstantiateHits() {
+		return getHits(EntryPoint.INSTANTIATE);
+	}
+
+	@Override
+	public long getInstantiateMisses() {
+		return getMisses(EntryPoint.INSTANTIATE);
+	}
+
+	/*
+	 * Hits of all entry points per all lookups, 0 if there are none
+	 */
+	@Override
+	public double getHitRatio() {
+		long h = 0;
+		long m = 0;
+		for (int i = 0; i < hits.length; i++) {
+			h += hits[i].sum();
+			m += misses[i].sum();
+		}
+		return h + m == 0 ? 0 : (double) h / (h + m);
+	}
+
+	@Override
+	public int getCacheSize() {
+		ObjectCache c = cache;
+		return c != null ? c.size() : 0;
+	}
+
+	/*
+	 * Evictions by the current cache
+	 */
+	@Override
+	public long getEvictionCount() {
+		ObjectCache c = cache;
+		return c != null ? c.getEvictionCount() : 0;
+	}
+
+	/*
+	 * Cached resources dropped because the graph changed
+	 */
+	@Override
+	public long getInvalidationCount() {
+		return invalidations.sum();
+	}
+
+	/*
+	 * Queries served from the query result cache, 0 if it is not enabled
+	 */
+	@Override
+	public long getQueryResultHits() {
+		QueryResultCache c = queryResultCache;
+		return c != null ? c.getHitCount() : 0;
+	}
+
+	@Override
+	public long getQueryResultMisses() {
+		QueryResultCache c = queryResultCache;
+		return c != null ? c.getMissCount() : 0;
+	}
+
+	@Override
+	public long getPopulatedResources() {
+		return populatedResources.sum();
+	}
+
+	@Override
+	public long getPopulations() {
+		return populations.sum();
+	}
+
+	@Override
+	public double getAverageFanOut() {
+		long n = populations.sum();
+		return n == 0 ? 0 : (double) populatedResources.sum() / n;
+	}
+
+	@Override
+	public long getMaxFanOut() {
+		return maxFanOut.get();
+	}
+
+	@Override
+	public long getPopulateTimeMillis() {
+		return populateNanos.sum() / 1000000;
+	}
+
+	@Override
+	public void reset() {
+		for (int i = 0; i < hits.length; i++) {
+			hits[i].reset();
+			misses[i].reset();
+		}
+		invalidations.reset();
+		populatedResources.reset();
+		populations.reset();
+		populateNanos.reset();
+		maxFanOut.reset();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("DualistStats[");
+		for (EntryPoint e : EntryPoint.values()) {
+			sb.append(e).append(" hits=").append(getHits(e)).append(" misses=").append(getMisses(e)).append(", ");
+		}
+		sb.append("cacheSize=").append(getCacheSize());
+		sb.append(", evictions=").append(getEvictionCount());
+		sb.append(", invalidations=").append(getInvalidationCount());
+		sb.append(", queryResultHits=").append(getQueryResultHits());
+		sb.append(", queryResultMisses=").append(getQueryResultMisses());
+		sb.append(", populations=").append(getPopulations());
+		sb.append(", averageFanOut=").append(getAverageFanOut());
+		sb.append(", maxFanOut=").append(getMaxFanOut());
+		sb.append(", populateTimeMillis=").append(getPopulateTimeMillis());
+		return sb.append("]").toString();
+	}
+
+}
@@ -0,0 +1,48 @@
+package org.dualist.ogm.stats;
+
+/*
+ * JMX view of DualistStats, registered with Dualist.registerStatsMBean
+ */
+public interface DualistStatsMBean {
+
+	long getGetHits();
+
+	long getGetMisses();
+
+	long getQueryHits();
+
+	long getQueryMisses();
+
+	long getGetAllHits();
+
+	long getGetAllMisses();
+
+	long getInstantiateHits();
+
+	long getInstantiateMisses();
+
+	double getHitRatio();
+
+	int getCacheSize();
+
+	long getEvictionCount();
+
+	long getInvalidationCount();
+
+	long getQueryResultHits();
+
+	long getQueryResultMisses();
+
+	long getPopulatedResources();
+
+	long getPopulations();
+
+	double getAverageFanOut();
+
+	long getMaxFanOut();
+
+	long getPopulateTimeMillis();
+
+	void reset();
+
+}
@@ -0,0 +1,125 @@
+package org.dualist.ogm;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.dualist.ogm.cache.BoundedObjectCache;
+import org.dualist.ogm.cache.BoundedObjectCache.ReferenceType;
+import org.dualist.ogm.pojo.GraphResource;
+import org.dualist.ogm.society.Person;
+import org.junit.Test;
+
+/**
+ * LRU eviction, expiry and reference values of the bounded cache.
+ */
+public class BoundedObjectCacheTest {
+
+    private static GraphResource resource(String uri) {
+        Person p = new Person();
+        p.setUri(uri);
+        return p;
+    }
+
+    @Test
+    public void leastRecentlyUsedAreEvicted() throws InterruptedException {
+        BoundedObjectCache cache = new BoundedObjectCache(10);
+        for (int i = 0; i < 10; i++) {
+            cache.put("r" + i, resource("r" + i));
+        }
+        Thread.sleep(2);
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(cache.get("r" + i));
+        }
+        cache.put("r10", resource("r10"));
+
+        assertTrue(cache.size() <= 10);
+        assertTrue(cache.getEvictionCount() > 0);
+        for (int i = 0; i < 5; i++) {
+            assertNotNull("r" + i, cache.get("r" + i));
+        }
+        assertNotNull(cache.get("r10"));
+    }
+
+    @Test
+    public void sizeStaysBounded() {
+        BoundedObjectCache cache = new BoundedObjectCache(100);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("r" + i, resource("r" + i));
+        }
+        assertTrue(cache.size() <= 100);
+        assertEquals(1000 - cache.size(), cache.getEvictionCount());
+    }
+
+    @Test
+    public void evictionRunsWhileEntriesAreRead() throws Exception {
+        BoundedObjectCache cache = new BoundedObjectCache(1000);
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        List<Future<?>> reads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            reads.add(readers.submit(() -> {
+                Random random = new Random();
+                while (!done.get()) {
+                    cache.get("r" + random.nextInt(5000));
+                }
+            }));
+        }
+        try {
+            for (int i = 0; i < 50000; i++) {
+                cache.put("r" + i % 5000, resource("r" + i % 5000));
+            }
+        } finally {
+            done.set(true);
+            readers.shutdown();
+        }
+        for (Future<?> f : reads) {
+            f.get();
+        }
+
+        assertTrue(cache.size() <= 1000);
+        assertTrue(cache.getEvictionCount() > 0);
+    }
+
+    @Test
+    public void expiredEntriesAreNotReturned() throws InterruptedException {
+        BoundedObjectCache cache = new BoundedObjectCache(10, 50, TimeUnit.MILLISECONDS, ReferenceType.STRONG);
+        GraphResource r = resource("r");
+        cache.put("r", r);
+        assertSame(r, cache.get("r"));
+
+        Thread.sleep(100);
+        assertNull(cache.get("r"));
+    }
+
+    @Test
+    public void softValuesAreReturnedWhileReachable() {
+        BoundedObjectCache cache = new BoundedObjectCache(10, 0, TimeUnit.SECONDS, ReferenceType.SOFT);
+        GraphResource r = resource("r");
+        cache.put("r", r);
+
+        assertSame(r, cache.get("r"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void weakValuesAreReleased() throws InterruptedException {
+        BoundedObjectCache cache = new BoundedObjectCache(10, 0, TimeUnit.SECONDS, ReferenceType.WEAK);
+        cache.put("r", resource("r"));
+
+        for (int i = 0; i < 50 && cache.get("r") != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(cache.get("r"));
+        assertEquals(0, cache.size());
+    }
+
+}
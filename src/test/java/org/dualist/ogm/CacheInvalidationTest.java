@@ -0,0 +1,101 @@
+package org.dualist.ogm;
+
+import static org.junit.Assert.*;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.dualist.ogm.society.Organization;
+import org.dualist.ogm.society.Person;
+import org.dualist.ogm.society.Society;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The cached objects of the resources changed in the graph are populated again.
+ */
+public class CacheInvalidationTest {
+
+    private Dualist dualist;
+    private Model model;
+
+    @Before
+    public void setUp() {
+        dualist = Society.load();
+        model = dualist.getModel();
+    }
+
+    @Test
+    public void modifiedResourceIsPopulatedAgain() {
+        Person alice = dualist.get(Society.NS + "alice", Person.class);
+        Resource res = model.getResource(Society.NS + "alice");
+        res.removeAll(model.getProperty(Society.NS + "name"));
+        res.addProperty(model.getProperty(Society.NS + "name"), "Alicia");
+
+        Person changed = dualist.get(Society.NS + "alice", Person.class);
+        assertNotSame(alice, changed);
+        assertEquals("Alicia", changed.getName());
+    }
+
+    @Test
+    public void unchangedResourceStaysCached() {
+        Organization org = dualist.get(Society.NS + "org1", Organization.class);
+        model.getResource(Society.NS + "carol").addLiteral(model.getProperty(Society.NS + "age"), 26);
+
+        assertSame(org, dualist.get(Society.NS + "org1", Organization.class));
+    }
+
+    @Test
+    public void removedReferenceInvalidatesReferrer() {
+        Person carol = dualist.get(Society.NS + "carol", Person.class);
+        assertEquals(1, carol.getKnows().size());
+        model.removeAll(null, null, model.getResource(Society.NS + "bob"));
+
+        Person changed = dualist.get(Society.NS + "carol", Person.class);
+        assertNotSame(carol, changed);
+        assertTrue(changed.getKnows() == null || changed.getKnows().isEmpty());
+    }
+
+    @Test
+    public void deletedResourceIsNotReturned() {
+        Person bob = dualist.get(Society.NS + "bob", Person.class);
+        Person carol = dualist.get(Society.NS + "carol", Person.class);
+        dualist.delete(bob);
+
+        assertNull(dualist.get(Society.NS + "bob", Person.class));
+        Person changed = dualist.get(Society.NS + "carol", Person.class);
+        assertNotSame(carol, changed);
+    }
+
+    @Test
+    public void dataChangesDoNotChangeSchemaGeneration() {
+        long schema = dualist.getCacheInvalidationListener().getSchemaGeneration();
+        Person alice = dualist.get(Society.NS + "alice", Person.class);
+        alice.setAge(32);
+        dualist.modify(alice);
+        model.removeAll(model.getResource(Society.NS + "carol"), null, null);
+
+        assertEquals(schema, dualist.getCacheInvalidationListener().getSchemaGeneration());
+    }
+
+    @Test
+    public void typingResourceDoesNotInvalidateInstancesOfClass() {
+        Person alice = dualist.get(Society.NS + "alice", Person.class);
+        model.createResource(Society.NS + "dave").addProperty(RDF.type, model.getResource(Society.NS + "Person"));
+
+        assertSame(alice, dualist.get(Society.NS + "alice", Person.class));
+        assertEquals(0, dualist.getStats().getInvalidationCount());
+    }
+
+    @Test
+    public void schemaChangeDropsCache() {
+        Person alice = dualist.get(Society.NS + "alice", Person.class);
+        Organization org = dualist.get(Society.NS + "org1", Organization.class);
+        model.getResource(Society.NS + "Person").addProperty(RDFS.subClassOf, model.createResource(Society.NS + "Member"));
+
+        assertNotSame(alice, dualist.get(Society.NS + "alice", Person.class));
+        assertNotSame(org, dualist.get(Society.NS + "org1", Organization.class));
+    }
+
+}
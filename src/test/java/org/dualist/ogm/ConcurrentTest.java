@@ -0,0 +1,158 @@
+package org.dualist.ogm;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+import org.dualist.ogm.pojo.GraphResource;
+import org.dualist.ogm.pojo.URI;
+import org.dualist.ogm.society.Organization;
+import org.dualist.ogm.society.Person;
+import org.dualist.ogm.society.Society;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+/**
+ * Parallel reads against serialized writes in the concurrent mode.
+ */
+public class ConcurrentTest {
+
+    private Dualist dualist;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        dualist = Society.load();
+        dualist.setConcurrent(true);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static void assertPopulated(Person p) {
+        assertFalse(p.isReference());
+        assertNotNull(p.getName());
+        for (Person k : p.getKnows()) {
+            assertFalse(k.isReference());
+            assertNotNull(k.getName());
+        }
+    }
+
+    @Test
+    public void readsRunAgainstWriter() throws Exception {
+        Person alice = dualist.get(Society.NS + "alice", Person.class);
+        dualist.updateLocation(alice, 60.2f, 24.9f, true);
+        List<Person> created = Society.persons(100);
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            tasks.add(() -> {
+                for (int i = 0; i < 200; i++) {
+                    Person p = dualist.get(Society.NS + (i % 2 == 0 ? "alice" : "bob"), Person.class);
+                    assertPopulated(p);
+                    List<URI> members = dualist.query("SELECT ?result WHERE { ?result society:memberOf society:org1 }");
+                    assertTrue(members.size() >= 2);
+                    List<GraphResource> visited = new ArrayList<>();
+                    dualist.querySpatial(new Envelope(24, 26, 60, 61), item -> visited.add((GraphResource) ((Geometry) item).getUserData()));
+                    assertFalse(visited.isEmpty());
+                    for (GraphResource v : visited) {
+                        assertFalse(v.isReference());
+                    }
+                }
+                return null;
+            });
+        }
+        tasks.add(() -> {
+            for (Person p : created) {
+                dualist.create(p);
+                dualist.updateLocation(p, 60.5f, 25f, true);
+                dualist.modify(dualist.get(Society.NS + "bob", Person.class));
+            }
+            return null;
+        });
+
+        for (Future<Void> f : executor.invokeAll(tasks, 60, TimeUnit.SECONDS)) {
+            f.get();
+        }
+        assertEquals(created.size() + 3, dualist.getAll(Person.class, "society:Person").size());
+    }
+
+    @Test
+    public void sameResourceIsCachedOnce() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            dualist.clearCache();
+            CyclicBarrier barrier = new CyclicBarrier(2);
+            Callable<Person> get = () -> {
+                barrier.await();
+                return dualist.get(Society.NS + "alice", Person.class);
+            };
+            Future<Person> a = executor.submit(get);
+            Future<Person> b = executor.submit(get);
+
+            // each read populates its own copy, and the first one published is cached
+            assertPopulated(a.get());
+            assertPopulated(b.get());
+            Person cached = dualist.get(Society.NS + "alice", Person.class);
+            assertTrue(cached == a.get() || cached == b.get());
+            assertSame(cached, dualist.get(Society.NS + "alice", Person.class));
+        }
+    }
+
+    @Test
+    public void sharedReferenceIsResolvedOnce() throws Exception {
+        dualist.setLazyLoading(true);
+        for (int round = 0; round < 50; round++) {
+            dualist.clearCache();
+            Person alice = dualist.get(Society.NS + "alice", Person.class);
+            Organization org = alice.getMemberOf();
+            assertTrue(org.isReference());
+
+            CyclicBarrier barrier = new CyclicBarrier(2);
+            Callable<GraphResource> resolve = () -> {
+                barrier.await();
+                return org.resolve();
+            };
+            Future<GraphResource> a = executor.submit(resolve);
+            Future<GraphResource> b = executor.submit(resolve);
+
+            assertSame(org, a.get());
+            assertSame(org, b.get());
+            assertFalse(org.isReference());
+            assertEquals("Org One", org.getName());
+        }
+    }
+
+    @Test
+    public void writeWaitsForOpenStream() throws Exception {
+        Stream<Person> persons = dualist.streamAll(Person.class, "society:Person");
+        assertTrue(persons.findFirst().isPresent());
+
+        Future<?> write = executor.submit(() -> dualist.create(Society.persons(1).get(0)));
+        try {
+            write.get(200, TimeUnit.MILLISECONDS);
+            fail("write while the stream is open");
+        } catch (TimeoutException e) {
+            // expected
+        }
+        persons.close();
+
+        write.get(10, TimeUnit.SECONDS);
+        assertNotNull(dualist.get(Society.NS + "p0", Person.class));
+    }
+
+}
@@ -0,0 +1,101 @@
+package org.dualist.ogm;
+
+import static org.junit.Assert.*;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.dualist.ogm.society.Person;
+import org.dualist.ogm.society.Society;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Writes of the changed fields only.
+ */
+public class DirtyTrackingTest {
+
+    private Dualist dualist;
+    private Model model;
+    private Resource alice;
+    private Property age;
+
+    @Before
+    public void setUp() {
+        dualist = Society.load();
+        model = dualist.getModel();
+        alice = model.getResource(Society.NS + "alice");
+        age = model.getProperty(Society.NS + "age");
+    }
+
+    @Test
+    public void populatedObjectIsClean() {
+        dualist.setDirtyTracking(true);
+        Person p = dualist.get(Society.NS + "alice", Person.class);
+
+        assertFalse(dualist.isDirty(p));
+        p.setName("Alicia");
+        assertTrue(dualist.isDirty(p));
+        dualist.modify(p);
+        assertFalse(dualist.isDirty(p));
+    }
+
+    @Test
+    public void modifyWritesOnlyChangedFields() {
+        dualist.setDirtyTracking(true);
+        Person p = dualist.get(Society.NS + "alice", Person.class);
+        // changed in the graph behind the object, and not in the object
+        dualist.getCacheInvalidationListener().suspend();
+        try {
+            alice.removeAll(age).addLiteral(age, 50);
+        } finally {
+            dualist.getCacheInvalidationListener().resume();
+        }
+        p.setName("Alicia");
+        dualist.modify(p);
+
+        assertEquals(50, alice.getProperty(age).getInt());
+        assertEquals("Alicia", alice.getProperty(model.getProperty(Society.NS + "name")).getString());
+    }
+
+    @Test
+    public void modifyWithoutTrackingWritesAllFields() {
+        Person p = dualist.get(Society.NS + "alice", Person.class);
+        dualist.getCacheInvalidationListener().suspend();
+        try {
+            alice.removeAll(age).addLiteral(age, 50);
+        } finally {
+            dualist.getCacheInvalidationListener().resume();
+        }
+        p.setName("Alicia");
+        dualist.modify(p);
+
+        assertEquals(31, alice.getProperty(age).getInt());
+    }
+
+    @Test
+    public void changedValueReplacesOldOne() {
+        Person p = dualist.get(Society.NS + "alice", Person.class);
+        p.setAge(32);
+        dualist.modify(p);
+
+        assertEquals(32, alice.getProperty(age).getInt());
+        assertEquals(1, model.listStatements(alice, age, (RDFNode) null).toList().size());
+    }
+
+    @Test
+    public void flushWritesTrackedChanges() {
+        dualist.setDirtyTracking(true);
+        Person p = dualist.get(Society.NS + "alice", Person.class);
+        Person bob = dualist.get(Society.NS + "bob", Person.class);
+        p.setName("Alicia");
+        bob.setAge(41);
+
+        assertEquals(2, dualist.flush());
+        assertEquals("Alicia", alice.getProperty(model.getProperty(Society.NS + "name")).getString());
+        assertEquals(41, model.getResource(Society.NS + "bob").getProperty(age).getInt());
+        assertEquals(0, dualist.flush());
+    }
+
+}
@@ -0,0 +1,91 @@
+package org.dualist.ogm;
+
+import static org.junit.Assert.*;
+
+import org.dualist.ogm.pojo.LazyResourceList;
+import org.dualist.ogm.society.Person;
+import org.dualist.ogm.society.Society;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The shapes of the objects populated with fetch plans.
+ */
+public class FetchPlanTest {
+
+    private Dualist dualist;
+
+    @Before
+    public void setUp() {
+        dualist = Society.load();
+    }
+
+    private static Person known(Person p, String name) {
+        for (Person k : p.getKnows()) {
+            if (k.getUri().equals(Society.NS + name)) {
+                return k;
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean knowsReferences(Person p) {
+        for (Person k : ((LazyResourceList<Person>) p.getKnows()).references()) {
+            if (!k.isReference()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void eagerPopulationResolvesReferences() {
+        Person alice = dualist.get(Society.NS + "alice", Person.class);
+
+        assertFalse(alice.getMemberOf().isReference());
+        assertEquals("Org One", alice.getMemberOf().getName());
+        assertFalse(alice.getKnows() instanceof LazyResourceList);
+        assertEquals("Bob", known(alice, "bob").getName());
+        assertEquals("Carol", known(alice, "carol").getName());
+    }
+
+    @Test
+    public void depthZeroLeavesReferences() {
+        Person alice = dualist.get(Society.NS + "alice", Person.class, FetchPlan.depth(0));
+
+        assertEquals("Alice", alice.getName());
+        assertTrue(alice.getMemberOf().isReference());
+        assertTrue(knowsReferences(alice));
+    }
+
+    @Test
+    public void followedFieldIsPopulated() {
+        Person alice = dualist.get(Society.NS + "alice", Person.class, FetchPlan.depth(1).follow("memberOf").withQueries(false));
+
+        assertFalse(alice.getMemberOf().isReference());
+        assertEquals("Org One", alice.getMemberOf().getName());
+        assertTrue(knowsReferences(alice));
+        assertNull(alice.getKnownBy());
+    }
+
+    @Test
+    public void queriesArePopulatedWithPlan() {
+        Person alice = dualist.get(Society.NS + "alice", Person.class, FetchPlan.depth(0).withQueries(true));
+
+        assertEquals(1, alice.getKnownBy().size());
+        assertEquals(Society.NS + "bob", alice.getKnownBy().get(0).getUri());
+    }
+
+    @Test
+    public void plannedObjectsAreNotCached() {
+        Person planned = dualist.get(Society.NS + "alice", Person.class, FetchPlan.depth(0));
+        Person alice = dualist.get(Society.NS + "alice", Person.class);
+
+        assertNotSame(planned, alice);
+        assertFalse(alice.getMemberOf().isReference());
+        assertFalse(alice.getKnows() instanceof LazyResourceList);
+        assertEquals("Bob", known(alice, "bob").getName());
+    }
+
+}
@@ -0,0 +1,72 @@
+package org.dualist.ogm;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.dualist.ogm.pojo.URI;
+import org.dualist.ogm.society.Person;
+import org.dualist.ogm.society.Society;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * instantiate() populates a list of URIs as one batch.
+ */
+public class InstantiateTest {
+
+    private Dualist dualist;
+
+    @Before
+    public void setUp() {
+        dualist = Society.load();
+    }
+
+    private static List<URI> uris(String... names) {
+        URI[] uris = new URI[names.length];
+        for (int i = 0; i < names.length; i++) {
+            uris[i] = new URI(Society.NS + names[i]);
+        }
+        return Arrays.asList(uris);
+    }
+
+    @Test
+    public void resultKeepsInputOrder() {
+        List<Person> persons = dualist.instantiate(uris("carol", "alice", "bob"), Person.class);
+
+        assertEquals(3, persons.size());
+        assertEquals("Carol", persons.get(0).getName());
+        assertEquals("Alice", persons.get(1).getName());
+        assertEquals("Bob", persons.get(2).getName());
+    }
+
+    @Test
+    public void missingUrisAreNull() {
+        List<Person> persons = dualist.instantiate(uris("alice", "nobody", "bob"), Person.class);
+
+        assertEquals(3, persons.size());
+        assertEquals("Alice", persons.get(0).getName());
+        assertNull(persons.get(1));
+        assertEquals("Bob", persons.get(2).getName());
+    }
+
+    @Test
+    public void duplicatesShareOneObject() {
+        List<Person> persons = dualist.instantiate(uris("bob", "alice", "bob"), Person.class);
+
+        assertEquals(3, persons.size());
+        assertSame(persons.get(0), persons.get(2));
+        assertSame(persons.get(0), dualist.get(Society.NS + "bob", Person.class));
+    }
+
+    @Test
+    public void cachedAndNewResourcesAreMixed() {
+        Person alice = dualist.get(Society.NS + "alice", Person.class);
+        List<Person> persons = dualist.instantiate(uris("bob", "alice"), Person.class);
+
+        assertSame(alice, persons.get(1));
+        assertEquals("Bob", persons.get(0).getName());
+    }
+
+}
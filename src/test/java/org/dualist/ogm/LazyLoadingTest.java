@@ -0,0 +1,69 @@
+package org.dualist.ogm;
+
+import static org.junit.Assert.*;
+
+import org.dualist.ogm.pojo.LazyResourceList;
+import org.dualist.ogm.society.Organization;
+import org.dualist.ogm.society.Person;
+import org.dualist.ogm.society.Society;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * References resolved when they are read in the lazy loading mode.
+ */
+public class LazyLoadingTest {
+
+    private Dualist dualist;
+
+    @Before
+    public void setUp() {
+        dualist = Society.load();
+    }
+
+    private static Person known(Person p, String name) {
+        for (Person k : p.getKnows()) {
+            if (k.getUri().equals(Society.NS + name)) {
+                return k;
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean knowsReferences(Person p) {
+        for (Person k : ((LazyResourceList<Person>) p.getKnows()).references()) {
+            if (!k.isReference()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void lazyReferencesAreResolvedOnAccess() {
+        dualist.setLazyLoading(true);
+        Person alice = dualist.get(Society.NS + "alice", Person.class);
+
+        assertTrue(alice.getMemberOf().isReference());
+        assertTrue(alice.getKnows() instanceof LazyResourceList);
+        assertTrue(knowsReferences(alice));
+        Person bob = known(alice, "bob");
+        assertFalse(bob.isReference());
+        assertEquals("Bob", bob.getName());
+
+        Organization org = (Organization) alice.getMemberOf().resolve();
+        assertEquals("Org One", org.getName());
+        assertSame(org, dualist.get(Society.NS + "org1", Organization.class));
+    }
+
+    @Test
+    public void eagerPopulationResolvesReferences() {
+        Person alice = dualist.get(Society.NS + "alice", Person.class);
+
+        assertFalse(alice.getMemberOf().isReference());
+        assertFalse(alice.getKnows() instanceof LazyResourceList);
+        assertEquals("Bob", known(alice, "bob").getName());
+    }
+
+}
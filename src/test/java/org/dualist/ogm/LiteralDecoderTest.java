@@ -0,0 +1,165 @@
+package org.dualist.ogm;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.dualist.ogm.annotations.OWLClass;
+import org.dualist.ogm.annotations.OWLProperty;
+import org.dualist.ogm.pojo.GraphResource;
+import org.dualist.ogm.society.Person;
+import org.dualist.ogm.society.Society;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Literals are decoded by the declared type of the field.
+ */
+public class LiteralDecoderTest {
+
+    @OWLClass("society:Measurement")
+    public static class Measurement extends GraphResource {
+
+        @OWLProperty("society:count")
+        long count;
+
+        @OWLProperty("society:amount")
+        BigDecimal amount;
+
+        @OWLProperty("society:day")
+        LocalDate day;
+
+        @OWLProperty("society:at")
+        Instant at;
+
+        @OWLProperty("society:note")
+        String note;
+
+        public long getCount() {
+            return count;
+        }
+
+        public void setCount(long count) {
+            this.count = count;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public void setAmount(BigDecimal amount) {
+            this.amount = amount;
+        }
+
+        public LocalDate getDay() {
+            return day;
+        }
+
+        public void setDay(LocalDate day) {
+            this.day = day;
+        }
+
+        public Instant getAt() {
+            return at;
+        }
+
+        public void setAt(Instant at) {
+            this.at = at;
+        }
+
+        public String getNote() {
+            return note;
+        }
+
+        public void setNote(String note) {
+            this.note = note;
+        }
+
+    }
+
+    private Dualist dualist;
+    private Model model;
+
+    @Before
+    public void setUp() {
+        dualist = Society.load();
+        dualist.registerResourceClass("society:Measurement", Measurement.class);
+        model = dualist.getModel();
+    }
+
+    private Resource measurement(String name) {
+        Resource m = model.createResource(Society.NS + name);
+        m.addProperty(model.getProperty(model.expandPrefix("rdf:type")), model.getResource(Society.NS + "Measurement"));
+        return m;
+    }
+
+    @Test
+    public void typedLiteralsAreDecoded() {
+        Resource m = measurement("m1");
+        m.addLiteral(model.getProperty(Society.NS + "count"), model.createTypedLiteral("12345678901", XSDDatatype.XSDlong));
+        m.addLiteral(model.getProperty(Society.NS + "amount"), model.createTypedLiteral("12.50", XSDDatatype.XSDdecimal));
+        m.addLiteral(model.getProperty(Society.NS + "day"), model.createTypedLiteral("2020-02-29", XSDDatatype.XSDdate));
+        m.addLiteral(model.getProperty(Society.NS + "at"), model.createTypedLiteral("2020-01-01T10:00:00Z", XSDDatatype.XSDdateTime));
+
+        Measurement read = dualist.get(Society.NS + "m1", Measurement.class);
+        assertEquals(12345678901L, read.getCount());
+        assertEquals(0, new BigDecimal("12.5").compareTo(read.getAmount()));
+        assertEquals(LocalDate.of(2020, 2, 29), read.getDay());
+        assertEquals(Instant.parse("2020-01-01T10:00:00Z"), read.getAt());
+    }
+
+    @Test
+    public void caretInLexicalFormIsKept() {
+        Resource m = measurement("m2");
+        m.addProperty(model.getProperty(Society.NS + "note"), "x^2 ^^ y");
+
+        Measurement m2 = dualist.get(Society.NS + "m2", Measurement.class);
+        assertEquals("x^2 ^^ y", m2.getNote());
+    }
+
+    @Test
+    public void stringFieldGetsLexicalFormOfTypedLiteral() {
+        Resource m = measurement("m3");
+        m.addLiteral(model.getProperty(Society.NS + "note"), model.createTypedLiteral("5", XSDDatatype.XSDint));
+
+        Measurement m3 = dualist.get(Society.NS + "m3", Measurement.class);
+        assertEquals("5", m3.getNote());
+    }
+
+    @Test
+    public void plainLiteralIsParsed() {
+        Resource carol = model.getResource(Society.NS + "carol");
+        carol.removeAll(model.getProperty(Society.NS + "age"));
+        carol.addProperty(model.getProperty(Society.NS + "age"), "26");
+
+        Person p = dualist.get(Society.NS + "carol", Person.class);
+        assertEquals(26, p.getAge());
+    }
+
+    @Test
+    public void valuesAreWrittenBackAsTypedLiterals() {
+        Measurement m = new Measurement();
+        m.setUri(Society.NS + "m4");
+        m.setCount(Long.MAX_VALUE);
+        m.setAmount(new BigDecimal("0.10"));
+        m.setDay(LocalDate.of(1999, 12, 31));
+        m.setAt(Instant.parse("2021-06-01T00:00:00Z"));
+        m.setNote("a^^b");
+        dualist.create(m);
+        dualist.clearCache();
+
+        Measurement read = dualist.get(Society.NS + "m4", Measurement.class);
+        assertNotSame(m, read);
+        assertEquals(Long.MAX_VALUE, read.getCount());
+        assertEquals(0, new BigDecimal("0.1").compareTo(read.getAmount()));
+        assertEquals(LocalDate.of(1999, 12, 31), read.getDay());
+        assertEquals(Instant.parse("2021-06-01T00:00:00Z"), read.getAt());
+        assertEquals("a^^b", read.getNote());
+    }
+
+}
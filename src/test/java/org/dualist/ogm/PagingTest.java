@@ -0,0 +1,96 @@
+package org.dualist.ogm;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dualist.ogm.society.Person;
+import org.dualist.ogm.society.Society;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Keyset paging of getAll and query.
+ */
+public class PagingTest {
+
+    private Dualist dualist;
+
+    @Before
+    public void setUp() {
+        dualist = Society.load();
+    }
+
+    private static List<String> names(Page<Person> page) {
+        List<String> names = new ArrayList<>();
+        for (Person p : page.getItems()) {
+            names.add(p.getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void pagesFollowEachOther() {
+        Page<Person> first = dualist.getAll(Person.class, "society:Person", null, 2);
+        assertEquals(List.of("Alice", "Bob"), names(first));
+        assertTrue(first.hasNext());
+        assertEquals(Society.NS + "bob", first.getNext());
+
+        Page<Person> second = dualist.getAll(Person.class, "society:Person", first.getNext(), 2);
+        assertEquals(List.of("Carol"), names(second));
+        assertFalse(second.hasNext());
+        assertNull(second.getNext());
+    }
+
+    @Test
+    public void fullLastPageHasNoNext() {
+        Page<Person> page = dualist.getAll(Person.class, "society:Person", null, 3);
+        assertEquals(3, page.size());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    public void pageAfterLastIsEmpty() {
+        Page<Person> page = dualist.getAll(Person.class, "society:Person", Society.NS + "carol", 2);
+        assertEquals(0, page.size());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    public void pageAfterMissingUriStartsFromNextOne() {
+        Page<Person> page = dualist.getAll(Person.class, "society:Person", Society.NS + "b", 10);
+        assertEquals(List.of("Bob", "Carol"), names(page));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void limitMustBePositive() {
+        dualist.getAll(Person.class, "society:Person", null, 0);
+    }
+
+    @Test
+    public void pagesFollowTypeChanges() {
+        dualist.getAll(Person.class, "society:Person", null, 10);
+        Person aaron = new Person();
+        aaron.setUri(Society.NS + "aaron");
+        aaron.setName("Aaron");
+        dualist.create(aaron);
+        dualist.getModel().removeAll(dualist.getModel().getResource(Society.NS + "carol"), null, null);
+
+        assertEquals(List.of("Aaron", "Alice", "Bob"), names(dualist.getAll(Person.class, "society:Person", null, 10)));
+        assertEquals(4, dualist.getAll(Person.class, "society:Agent", null, 10).size());
+    }
+
+    @Test
+    public void queryPagesAreOrderedByUri() {
+        String query = "SELECT ?result WHERE { ?result society:knows ?other } ORDER BY DESC(?result)";
+        Page<Person> first = dualist.query(Person.class, query, null, 2);
+        assertEquals(List.of("Alice", "Bob"), names(first));
+        assertTrue(first.hasNext());
+
+        Page<Person> second = dualist.query(Person.class, query, first.getNext(), 2);
+        assertEquals(List.of("Carol"), names(second));
+        assertFalse(second.hasNext());
+    }
+
+}
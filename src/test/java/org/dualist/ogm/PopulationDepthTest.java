@@ -0,0 +1,89 @@
+package org.dualist.ogm;
+
+import static org.junit.Assert.*;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.dualist.ogm.society.Person;
+import org.dualist.ogm.society.Society;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Referenced resources are populated from a worklist, breadth-first.
+ */
+public class PopulationDepthTest {
+
+    private Dualist dualist;
+    private Model model;
+
+    @Before
+    public void setUp() {
+        dualist = Society.load();
+        model = dualist.getModel();
+    }
+
+    /*
+     * Persons c0 .. c(n-1), each knowing the next one
+     */
+    private void chain(int n) {
+        Property knows = model.getProperty(Society.NS + "knows");
+        Property name = model.getProperty(Society.NS + "name");
+        Resource person = model.getResource(Society.NS + "Person");
+        Property type = model.getProperty(model.expandPrefix("rdf:type"));
+        for (int i = 0; i < n; i++) {
+            Resource c = model.createResource(Society.NS + "c" + i);
+            c.addProperty(type, person);
+            c.addProperty(name, "C" + i);
+            if (i + 1 < n) {
+                c.addProperty(knows, model.createResource(Society.NS + "c" + (i + 1)));
+            }
+        }
+    }
+
+    @Test
+    public void longChainDoesNotOverflowStack() {
+        int n = 10000;
+        chain(n);
+        dualist.setPopulateSparqlProperties(false);
+
+        Person p = dualist.get(Society.NS + "c0", Person.class);
+        int length = 1;
+        while (p.getKnows() != null && !p.getKnows().isEmpty()) {
+            p = p.getKnows().get(0);
+            assertFalse(p.isReference());
+            length++;
+        }
+        assertEquals(n, length);
+        assertEquals("C" + (n - 1), p.getName());
+    }
+
+    @Test
+    public void cyclesArePopulatedOnce() {
+        Person alice = dualist.get(Society.NS + "alice", Person.class);
+        Person bob = alice.getKnows().stream().filter(k -> k.getName().equals("Bob")).findFirst().get();
+
+        assertSame(alice, bob.getKnows().get(0));
+    }
+
+    @Test
+    public void depthLimitLeavesReferences() {
+        chain(5);
+        dualist.setPopulateSparqlProperties(false);
+        dualist.setPopulationDepth(2);
+
+        Person c0 = dualist.get(Society.NS + "c0", Person.class);
+        Person c1 = c0.getKnows().get(0);
+        Person c2 = c1.getKnows().get(0);
+        assertFalse(c1.isReference());
+        assertFalse(c2.isReference());
+        assertTrue(c2.getKnows().get(0).isReference());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void depthMustNotBeNegative() {
+        dualist.setPopulationDepth(-1);
+    }
+
+}
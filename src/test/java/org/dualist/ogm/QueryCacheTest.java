@@ -0,0 +1,75 @@
+package org.dualist.ogm;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.dualist.ogm.pojo.URI;
+import org.dualist.ogm.query.QueryCache;
+import org.dualist.ogm.society.Society;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Parsed queries are reused, and parsed again after the prefixes change.
+ */
+public class QueryCacheTest {
+
+    private static final String PERSONS = "SELECT ?result WHERE { ?result a ex:Person }";
+
+    private Dualist dualist;
+
+    @Before
+    public void setUp() {
+        dualist = Society.load();
+        dualist.getModel().setNsPrefix("ex", Society.NS);
+    }
+
+    @Test
+    public void repeatedQueryIsParsedOnce() {
+        QueryCache cache = new QueryCache(dualist.getModel());
+        assertSame(cache.get(PERSONS), cache.get(PERSONS));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void prefixChangeInvalidatesParsedQueries() {
+        assertEquals(3, dualist.query(PERSONS).size());
+
+        dualist.getModel().setNsPrefix("ex", "http://example.org/other#");
+        assertEquals(0, dualist.query(PERSONS).size());
+
+        dualist.getModel().setNsPrefix("ex", Society.NS);
+        assertEquals(3, dualist.query(PERSONS).size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void attributeValuesAreBound() {
+        List<URI> named = dualist.queryByAttributeValue(URI.class, "society:name", "Bob");
+        assertEquals(1, named.size());
+        assertEquals(Society.NS + "bob", named.get(0).getUri());
+
+        List<URI> members = dualist.queryByAttributeValue(URI.class, "society:memberOf", new URI(Society.NS + "org1"));
+        assertEquals(2, members.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void attributeValuesNeedNoEscaping() {
+        Resource carol = dualist.getModel().getResource(Society.NS + "carol");
+        Property name = dualist.getModel().getProperty(Society.NS + "name");
+        carol.removeAll(name);
+        carol.addProperty(name, "Carol \"C\" \\ Smith");
+
+        List<URI> named = dualist.queryByAttributeValue(URI.class, "society:name", "Carol \"C\" \\ Smith");
+        assertEquals(1, named.size());
+        assertEquals(Society.NS + "carol", named.get(0).getUri());
+        assertEquals(0, dualist.queryByAttributeValue(URI.class, "society:name", "\" } ").size());
+        assertEquals(1, dualist.queryByAttributeValue(URI.class, "society:age", 40).size());
+    }
+
+}
@@ -0,0 +1,117 @@
+package org.dualist.ogm;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.vocabulary.RDF;
+import org.dualist.ogm.annotations.OWLClass;
+import org.dualist.ogm.annotations.OWLProperty;
+import org.dualist.ogm.pojo.GraphResource;
+import org.dualist.ogm.society.Person;
+import org.dualist.ogm.society.Society;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The query properties of a result are populated together, each resource getting its own results.
+ */
+public class QueryPropertiesTest {
+
+    @OWLClass("society:Club")
+    public static class Club extends GraphResource {
+
+        @OWLProperty(value = "society:knows", attributeType = "society:Manager")
+        List<Person> managers;
+
+        @OWLProperty(query = "SELECT ?result WHERE { ?resource society:knows ?result }", attributeType = "society:Manager")
+        List<Person> knownManagers;
+
+        public List<Person> getManagers() {
+            return managers;
+        }
+
+        public void setManagers(List<Person> managers) {
+            this.managers = managers;
+        }
+
+        public List<Person> getKnownManagers() {
+            return knownManagers;
+        }
+
+        public void setKnownManagers(List<Person> knownManagers) {
+            this.knownManagers = knownManagers;
+        }
+    }
+
+    private Dualist dualist;
+
+    @Before
+    public void setUp() {
+        dualist = Society.load();
+    }
+
+    private static Set<String> names(List<Person> persons) {
+        Set<String> names = new TreeSet<>();
+        if (persons != null) {
+            for (Person p : persons) {
+                names.add(p.getName());
+            }
+        }
+        return names;
+    }
+
+    private static Person named(List<Person> persons, String name) {
+        for (Person p : persons) {
+            if (name.equals(p.getName())) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void everyResourceOfResultGetsItsOwnResults() {
+        List<Person> persons = dualist.getAll(Person.class, "society:Person");
+
+        assertEquals(Set.of("Bob"), names(named(persons, "Alice").getKnownBy()));
+        assertEquals(Set.of("Alice", "Carol"), names(named(persons, "Bob").getKnownBy()));
+        assertEquals(Set.of("Alice"), names(named(persons, "Carol").getKnownBy()));
+    }
+
+    @Test
+    public void queryResultsArePopulatedObjects() {
+        Person carol = dualist.get(Society.NS + "carol", Person.class);
+        Person alice = carol.getKnownBy().get(0);
+
+        assertFalse(alice.isReference());
+        assertSame(alice, dualist.get(Society.NS + "alice", Person.class));
+        assertEquals(Set.of("Bob"), names(alice.getKnownBy()));
+    }
+
+    @Test
+    public void queryPropertiesCanBeTurnedOff() {
+        dualist.setPopulateSparqlProperties(false);
+
+        Person alice = dualist.get(Society.NS + "alice", Person.class);
+        assertNull(alice.getKnownBy());
+    }
+
+    @Test
+    public void resultsAreFilteredByType() {
+        Model model = dualist.getModel();
+        dualist.registerResourceClass("society:Club", Club.class);
+        model.getResource(Society.NS + "bob").addProperty(RDF.type, model.getResource(Society.NS + "Manager"));
+        model.createResource(Society.NS + "club", model.getResource(Society.NS + "Club"))
+                .addProperty(model.getProperty(Society.NS + "knows"), model.getResource(Society.NS + "alice"))
+                .addProperty(model.getProperty(Society.NS + "knows"), model.getResource(Society.NS + "bob"));
+
+        Club club = dualist.get(Society.NS + "club", Club.class);
+        assertEquals(Set.of("Bob"), names(club.getManagers()));
+        assertEquals(Set.of("Bob"), names(club.getKnownManagers()));
+    }
+
+}
@@ -0,0 +1,73 @@
+package org.dualist.ogm;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.dualist.ogm.query.QueryResultCache;
+import org.dualist.ogm.society.Person;
+import org.dualist.ogm.society.Society;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Query results are reused until the graph changes.
+ */
+public class QueryResultCacheTest {
+
+    private static final String PERSONS = "SELECT ?result WHERE { ?result a society:Person }";
+
+    private Dualist dualist;
+    private QueryResultCache cache;
+
+    @Before
+    public void setUp() {
+        dualist = Society.load();
+        dualist.enableQueryResultCache(100);
+        cache = dualist.getQueryResultCache();
+    }
+
+    @Test
+    public void repeatedQueryHits() {
+        List<Person> first = dualist.query(Person.class, PERSONS);
+        List<Person> second = dualist.query(Person.class, PERSONS);
+
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, second.size());
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void writeMakesResultStale() {
+        dualist.query(Person.class, PERSONS);
+        Person dave = new Person();
+        dave.setUri(Society.NS + "dave");
+        dave.setName("Dave");
+        dualist.create(dave);
+
+        List<Person> persons = dualist.query(Person.class, PERSONS);
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(4, persons.size());
+    }
+
+    @Test
+    public void directGraphChangeMakesResultStale() {
+        dualist.query(Person.class, PERSONS);
+        dualist.getModel().removeAll(dualist.getModel().getResource(Society.NS + "carol"), null, null);
+
+        assertEquals(2, dualist.query(Person.class, PERSONS).size());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void differentTextMisses() {
+        dualist.query(Person.class, PERSONS);
+        dualist.query(Person.class, "SELECT ?result WHERE { ?result  a society:Person }");
+
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+}
@@ -0,0 +1,60 @@
+package org.dualist.ogm;
+
+import static org.junit.Assert.*;
+
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.ontology.OntModelSpec;
+import org.dualist.ogm.pojo.GraphResource.ATTRIBUTE_RESTRICTION;
+import org.dualist.ogm.schema.RestrictionIndex;
+import org.dualist.ogm.schema.RestrictionIndex.Cardinality;
+import org.dualist.ogm.schema.TypeHierarchy;
+import org.dualist.ogm.society.Society;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Cardinality restrictions by property and class, see schema.ttl.
+ */
+public class RestrictionIndexTest {
+
+    private static final String MEMBER_OF = Society.NS + "memberOf";
+    private static final String KNOWS = Society.NS + "knows";
+
+    private RestrictionIndex restrictions;
+
+    @Before
+    public void setUp() {
+        OntModel model = TypeHierarchyTest.schema(OntModelSpec.OWL_MEM_RDFS_INF);
+        restrictions = new RestrictionIndex(model, new TypeHierarchy(model, 0));
+    }
+
+    @Test
+    public void restrictionOfClass() {
+        Cardinality c = restrictions.get(MEMBER_OF, TypeHierarchyTest.PERSON);
+        assertEquals(ATTRIBUTE_RESTRICTION.MIN_CARDINALITY, c.getKind());
+        assertEquals(1, c.getValue());
+
+        c = restrictions.get(KNOWS, TypeHierarchyTest.EMPLOYEE);
+        assertEquals(ATTRIBUTE_RESTRICTION.MAX_CARDINALITY, c.getKind());
+        assertEquals(10, c.getValue());
+    }
+
+    @Test
+    public void restrictionIsInheritedBySubClasses() {
+        assertEquals(1, restrictions.get(MEMBER_OF, TypeHierarchyTest.MANAGER).getValue());
+        assertEquals(10, restrictions.get(KNOWS, TypeHierarchyTest.MANAGER).getValue());
+    }
+
+    @Test
+    public void propertyWithoutRestrictions() {
+        assertNull(restrictions.get(Society.NS + "name", TypeHierarchyTest.PERSON));
+        assertNull(restrictions.get(Society.NS + "undeclared", TypeHierarchyTest.PERSON));
+    }
+
+    @Test
+    public void unrelatedClassGetsLastRestrictionOfProperty() {
+        assertEquals(10, restrictions.get(KNOWS, TypeHierarchyTest.ORGANIZATION).getValue());
+        assertEquals(10, restrictions.get(KNOWS, null).getValue());
+    }
+
+}
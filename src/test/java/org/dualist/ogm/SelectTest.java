@@ -0,0 +1,86 @@
+package org.dualist.ogm;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.dualist.ogm.pojo.URI;
+import org.dualist.ogm.society.Society;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Rows of SELECT queries as DTOs.
+ */
+public class SelectTest {
+
+    public static class Member {
+        public String name;
+        public int age;
+        public URI org;
+    }
+
+    public static class Named {
+        private String person;
+        private String name;
+
+        public String getPerson() {
+            return person;
+        }
+
+        public void setPerson(String person) {
+            this.person = person;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    private Dualist dualist;
+
+    @Before
+    public void setUp() {
+        dualist = Society.load();
+    }
+
+    @Test
+    public void variablesAreSetToPublicFields() {
+        List<Member> rows = dualist.select("SELECT ?name ?age ?org WHERE { ?p society:name ?name; society:age ?age; "
+                + "society:memberOf ?org } ORDER BY ?age", Member.class);
+
+        assertEquals(2, rows.size());
+        assertEquals("Alice", rows.get(0).name);
+        assertEquals(31, rows.get(0).age);
+        assertEquals(Society.NS + "org1", rows.get(0).org.toString());
+        assertEquals("Bob", rows.get(1).name);
+        assertEquals(40, rows.get(1).age);
+    }
+
+    @Test
+    public void variablesAreSetWithSetters() {
+        List<Named> rows = dualist.select("SELECT ?person ?name WHERE { ?person a society:Person; society:name ?name } "
+                + "ORDER BY ?name", Named.class);
+
+        assertEquals(3, rows.size());
+        assertEquals(Society.NS + "alice", rows.get(0).getPerson());
+        assertEquals("Alice", rows.get(0).getName());
+        assertEquals("Carol", rows.get(2).getName());
+    }
+
+    @Test
+    public void unboundVariablesLeaveDefaults() {
+        List<Member> rows = dualist.select("SELECT ?name ?org WHERE { ?p a society:Person; society:name ?name "
+                + "OPTIONAL { ?p society:memberOf ?org } } ORDER BY ?name", Member.class);
+
+        assertEquals(3, rows.size());
+        assertEquals("Carol", rows.get(2).name);
+        assertNull(rows.get(2).org);
+        assertEquals(0, rows.get(2).age);
+    }
+
+}
@@ -0,0 +1,70 @@
+package org.dualist.ogm;
+
+import static org.junit.Assert.*;
+
+import org.dualist.ogm.society.Person;
+import org.dualist.ogm.society.Society;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Snapshots do not see the later writes of the graph.
+ */
+public class SnapshotTest {
+
+    private Dualist dualist;
+
+    @Before
+    public void setUp() {
+        dualist = Society.load();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void snapshotsAreOffByDefault() {
+        dualist.snapshot();
+    }
+
+    @Test
+    public void snapshotDoesNotSeeLaterWrites() {
+        dualist.setSnapshots(true);
+        Person alice = dualist.get(Society.NS + "alice", Person.class);
+        Dualist snapshot = dualist.snapshot();
+
+        alice.setName("Alicia");
+        dualist.modify(alice);
+        Person dave = new Person();
+        dave.setUri(Society.NS + "dave");
+        dave.setName("Dave");
+        dualist.create(dave);
+
+        Person old = snapshot.get(Society.NS + "alice", Person.class);
+        assertNotSame(alice, old);
+        assertEquals("Alice", old.getName());
+        assertNull(snapshot.get(Society.NS + "dave", Person.class));
+        assertEquals(3, snapshot.getAll(Person.class, "society:Person").size());
+        assertEquals(4, dualist.getAll(Person.class, "society:Person").size());
+    }
+
+    @Test
+    public void snapshotIsReadOnly() {
+        dualist.setSnapshots(true);
+        Dualist snapshot = dualist.snapshot();
+        Person dave = new Person();
+        dave.setUri(Society.NS + "dave");
+        snapshot.create(dave);
+
+        assertFalse(snapshot.containsResource(Society.NS + "dave"));
+    }
+
+    @Test
+    public void snapshotKeepsModes() {
+        dualist.setSnapshots(true);
+        dualist.setDirtyTracking(true);
+        Dualist snapshot = dualist.snapshot();
+
+        assertTrue(snapshot.isSnapshots());
+        assertTrue(snapshot.isDirtyTracking());
+        assertEquals("Alice", snapshot.snapshot().<Person>get(Society.NS + "alice", Person.class).getName());
+    }
+
+}
@@ -0,0 +1,73 @@
+package org.dualist.ogm;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.dualist.ogm.society.Person;
+import org.dualist.ogm.society.Society;
+import org.dualist.ogm.stats.DualistStats.EntryPoint;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Resources are populated as the stream is consumed, and the graph is released when it is closed.
+ */
+public class StreamTest {
+
+    private Dualist dualist;
+
+    @Before
+    public void setUp() {
+        dualist = Society.load();
+    }
+
+    @Test
+    public void allResourcesOfTypeAreStreamed() {
+        try (Stream<Person> persons = dualist.streamAll(Person.class, "society:Person")) {
+            Set<String> names = persons.map(Person::getName).collect(Collectors.toSet());
+            assertEquals(Set.of("Alice", "Bob", "Carol"), names);
+        }
+    }
+
+    @Test
+    public void queryResultsAreStreamed() {
+        try (Stream<Person> persons = dualist.streamQuery(Person.class,
+                "SELECT ?result WHERE { ?result society:memberOf society:org1 }")) {
+            Set<String> names = persons.map(Person::getName).collect(Collectors.toSet());
+            assertEquals(Set.of("Alice", "Bob"), names);
+        }
+    }
+
+    @Test
+    public void onlyConsumedResourcesArePopulated() {
+        List<Person> first;
+        try (Stream<Person> persons = dualist.streamAll(Person.class, "society:Person", FetchPlan.depth(0))) {
+            first = persons.limit(1).collect(Collectors.toList());
+        }
+
+        assertEquals(1, first.size());
+        assertEquals(1, dualist.getStats().getMisses(EntryPoint.GET_ALL));
+    }
+
+    @Test
+    public void closeHandlersRun() {
+        AtomicBoolean closed = new AtomicBoolean();
+        Stream<Person> persons = dualist.streamQuery(Person.class, "SELECT ?result WHERE { ?result a society:Person }");
+        persons.onClose(() -> closed.set(true));
+        persons.findFirst();
+        persons.close();
+
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void queryWithoutResultIsEmpty() {
+        assertEquals(0, dualist.streamQuery(Person.class, "SELECT ?p WHERE { ?p a society:Person }").count());
+    }
+
+}
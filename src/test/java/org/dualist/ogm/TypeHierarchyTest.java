@@ -0,0 +1,96 @@
+package org.dualist.ogm;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.ontology.OntModelSpec;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.dualist.ogm.schema.TypeHierarchy;
+import org.dualist.ogm.society.Organization;
+import org.dualist.ogm.society.Person;
+import org.dualist.ogm.society.Society;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Superclass closures of the class hierarchy index, see schema.ttl.
+ */
+public class TypeHierarchyTest {
+
+    static final String AGENT = Society.NS + "Agent";
+    static final String PERSON = Society.NS + "Person";
+    static final String EMPLOYEE = Society.NS + "Employee";
+    static final String MANAGER = Society.NS + "Manager";
+    static final String ORGANIZATION = Society.NS + "Organization";
+
+    private TypeHierarchy hierarchy;
+
+    static OntModel schema(OntModelSpec spec) {
+        OntModel model = ModelFactory.createOntologyModel(spec);
+        model.read(TypeHierarchyTest.class.getResourceAsStream("/schema.ttl"), null, "TTL");
+        return model;
+    }
+
+    @Before
+    public void setUp() {
+        hierarchy = new TypeHierarchy(schema(OntModelSpec.OWL_MEM_RDFS_INF), 0);
+    }
+
+    @Test
+    public void superClassesAreTransitive() {
+        assertTrue(hierarchy.isSubClassOf(MANAGER, EMPLOYEE));
+        assertTrue(hierarchy.isSubClassOf(MANAGER, PERSON));
+        assertTrue(hierarchy.isSubClassOf(MANAGER, AGENT));
+        assertFalse(hierarchy.isSubClassOf(AGENT, PERSON));
+        assertFalse(hierarchy.isSubClassOf(ORGANIZATION, PERSON));
+    }
+
+    @Test
+    public void leavesHaveNoSubClasses() {
+        assertTrue(hierarchy.isLeaf(hierarchy.id(MANAGER)));
+        assertTrue(hierarchy.isLeaf(hierarchy.id(ORGANIZATION)));
+        assertFalse(hierarchy.isLeaf(hierarchy.id(EMPLOYEE)));
+        assertFalse(hierarchy.isLeaf(hierarchy.id(AGENT)));
+    }
+
+    @Test
+    public void mostSpecificTypeIsSelected() {
+        assertEquals(MANAGER, hierarchy.getMostSpecificType(List.of(AGENT, MANAGER, PERSON, EMPLOYEE)));
+        assertEquals(EMPLOYEE, hierarchy.getMostSpecificType(List.of(PERSON, EMPLOYEE, AGENT)));
+        assertEquals(PERSON, hierarchy.getMostSpecificType(List.of("http://example.org/other#Thing", PERSON)));
+    }
+
+    @Test
+    public void nearestSuperClassInNamespace() {
+        assertEquals(EMPLOYEE, hierarchy.getSuperClass(MANAGER, Society.NS));
+        assertEquals(AGENT, hierarchy.getSuperClass(PERSON, null));
+        assertNull(hierarchy.getSuperClass(AGENT, Society.NS));
+    }
+
+    @Test
+    public void registeredClassOfNearestSuperClassIsResolved() {
+        Map<String, Class<?>> registered = Map.of(PERSON, Person.class, ORGANIZATION, Organization.class);
+
+        assertEquals(Person.class, hierarchy.resolve(MANAGER, registered));
+        assertEquals(Person.class, hierarchy.resolve(PERSON, registered));
+        assertEquals(Organization.class, hierarchy.resolve(ORGANIZATION, registered));
+        assertNull(hierarchy.resolve(AGENT, registered));
+    }
+
+    @Test
+    public void closureDoesNotNeedInference() {
+        TypeHierarchy asserted = new TypeHierarchy(schema(OntModelSpec.OWL_MEM), 0);
+
+        assertTrue(asserted.isSubClassOf(MANAGER, EMPLOYEE));
+        assertTrue(asserted.isSubClassOf(MANAGER, AGENT));
+        assertFalse(asserted.isSubClassOf(AGENT, MANAGER));
+        assertTrue(asserted.isLeaf(asserted.id(MANAGER)));
+        assertFalse(asserted.isLeaf(asserted.id(PERSON)));
+        assertEquals(MANAGER, asserted.getMostSpecificType(List.of(AGENT, MANAGER, PERSON)));
+        assertEquals(Person.class, asserted.resolve(MANAGER, Map.of(PERSON, Person.class)));
+    }
+
+}
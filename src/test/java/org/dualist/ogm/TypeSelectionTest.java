@@ -0,0 +1,59 @@
+package org.dualist.ogm;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.dualist.ogm.pojo.GraphResource;
+import org.dualist.ogm.society.Person;
+import org.dualist.ogm.society.Society;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The type of a resource is the most specific of its types, and selects the registered class.
+ */
+public class TypeSelectionTest {
+
+    private Dualist dualist;
+    private Model model;
+
+    @Before
+    public void setUp() {
+        dualist = Society.load();
+        dualist.loadModelFile("schema.ttl", "TTL");
+        model = dualist.getModel();
+        Resource dan = model.createResource(Society.NS + "dan");
+        dan.addProperty(RDF.type, model.getResource(TypeHierarchyTest.MANAGER));
+        dan.addProperty(model.getProperty(Society.NS + "name"), "Dan");
+    }
+
+    @Test
+    public void mostSpecificTypeOfInferredTypes() {
+        assertEquals(TypeHierarchyTest.MANAGER, dualist.getResourceType(List.of(TypeHierarchyTest.AGENT,
+                TypeHierarchyTest.MANAGER, TypeHierarchyTest.PERSON, TypeHierarchyTest.EMPLOYEE)));
+    }
+
+    @Test
+    public void subClassGetsClassOfRegisteredSuperClass() {
+        GraphResource dan = dualist.get(Society.NS + "dan", Person.class);
+
+        assertTrue(dan instanceof Person);
+        assertEquals("Dan", dan.getName());
+        assertEquals(TypeHierarchyTest.MANAGER, model.expandPrefix(dan.getType()));
+    }
+
+    @Test
+    public void vocabularyTypesAreIgnored() {
+        Resource alice = model.getResource(Society.NS + "alice");
+        alice.addProperty(RDF.type, OWL.Thing);
+
+        assertTrue(dualist.get(Society.NS + "alice", Person.class) instanceof Person);
+        assertTrue(dualist.getIgnoredTypeNamespaces().contains(OWL.NS));
+    }
+
+}
@@ -0,0 +1,70 @@
+package org.dualist.ogm;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.dualist.ogm.society.Person;
+import org.dualist.ogm.society.Society;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Batch writes of createAll and upsertAll.
+ */
+public class WriteBatchTest {
+
+    private Dualist dualist;
+    private Model model;
+
+    @Before
+    public void setUp() {
+        dualist = Society.load();
+        model = dualist.getModel();
+    }
+
+    private List<String> names(String uri) {
+        return model.listObjectsOfProperty(model.getResource(uri), model.getProperty(Society.NS + "name"))
+                .mapWith(n -> n.asLiteral().getString()).toList();
+    }
+
+    @Test
+    public void createAllWritesAllResources() {
+        List<Resource> created = dualist.createAll(Society.persons(5));
+
+        assertEquals(5, created.size());
+        assertEquals(Society.NS + "p0", created.get(0).getURI());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(List.of("P" + i), names(Society.NS + "p" + i));
+        }
+        assertEquals(List.of("Org Two"), names(Society.NS + "org2"));
+        assertEquals(8, dualist.getAll(Person.class, "society:Person").size());
+    }
+
+    @Test
+    public void createdResourcesAreReadBack() {
+        dualist.createAll(Society.persons(3));
+
+        Person p1 = dualist.get(Society.NS + "p1", Person.class);
+        assertEquals("P1", p1.getName());
+        assertEquals(21, p1.getAge());
+        assertEquals(Society.NS + "org2", p1.getMemberOf().getUri());
+        assertEquals("Org Two", p1.getMemberOf().getName());
+    }
+
+    @Test
+    public void upsertAllReplacesChangedValues() {
+        dualist.createAll(Society.persons(3));
+        long size = model.size();
+        List<Person> persons = Society.persons(3);
+        persons.get(0).setName("Changed");
+        dualist.upsertAll(persons);
+
+        assertEquals(List.of("Changed"), names(Society.NS + "p0"));
+        assertEquals(List.of("P1"), names(Society.NS + "p1"));
+        assertEquals(size, model.size());
+    }
+
+}
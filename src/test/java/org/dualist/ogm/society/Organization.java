@@ -0,0 +1,9 @@
+package org.dualist.ogm.society;
+
+import org.dualist.ogm.annotations.OWLClass;
+import org.dualist.ogm.pojo.GraphResource;
+
+@OWLClass("society:Organization")
+public class Organization extends GraphResource {
+
+}
@@ -0,0 +1,56 @@
+package org.dualist.ogm.society;
+
+import java.util.List;
+
+import org.dualist.ogm.annotations.OWLClass;
+import org.dualist.ogm.annotations.OWLProperty;
+import org.dualist.ogm.pojo.GraphResource;
+
+@OWLClass("society:Person")
+public class Person extends GraphResource {
+
+    @OWLProperty("society:age")
+    int age;
+
+    @OWLProperty("society:memberOf")
+    Organization memberOf;
+
+    @OWLProperty("society:knows")
+    List<Person> knows;
+
+    @OWLProperty(query = "SELECT ?result WHERE { ?result society:knows ?resource }")
+    List<Person> knownBy;
+
+    public int getAge() {
+        return age;
+    }
+
+    public void setAge(int age) {
+        this.age = age;
+    }
+
+    public Organization getMemberOf() {
+        return memberOf;
+    }
+
+    public void setMemberOf(Organization memberOf) {
+        this.memberOf = memberOf;
+    }
+
+    public List<Person> getKnows() {
+        return knows;
+    }
+
+    public void setKnows(List<Person> knows) {
+        this.knows = knows;
+    }
+
+    public List<Person> getKnownBy() {
+        return knownBy;
+    }
+
+    public void setKnownBy(List<Person> knownBy) {
+        this.knownBy = knownBy;
+    }
+
+}
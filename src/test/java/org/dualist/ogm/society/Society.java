@@ -0,0 +1,43 @@
+package org.dualist.ogm.society;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.dualist.ogm.Dualist;
+
+/*
+ * Test graph of three persons and an organization, see society.ttl
+ */
+public class Society {
+
+    public static final String NS = "http://example.org/society#";
+
+    public static Dualist load() {
+        Dualist dualist = new Dualist();
+        dualist.loadModelFile("society.ttl", "TTL");
+        dualist.setBaseNs(NS);
+        dualist.registerResourceClass("society:Person", Person.class);
+        dualist.registerResourceClass("society:Organization", Organization.class);
+        return dualist;
+    }
+
+    /*
+     * New persons p0..p(n-1), members of a new organization
+     */
+    public static List<Person> persons(int n) {
+        Organization org = new Organization();
+        org.setUri(NS + "org2");
+        org.setName("Org Two");
+        List<Person> persons = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Person p = new Person();
+            p.setUri(NS + "p" + i);
+            p.setName("P" + i);
+            p.setAge(20 + i);
+            p.setMemberOf(org);
+            persons.add(p);
+        }
+        return persons;
+    }
+
+}